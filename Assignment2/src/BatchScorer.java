@@ -0,0 +1,169 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class to score a stream of sentences with each type of smoothing on a pool of workers, writing the log probability of each sentence and
+ * keeping the totals for the perplexity of the whole stream
+ *
+ * @author Ekal.Golas
+ */
+public class BatchScorer {
+	private final Smoothing			smoothing;
+	private final Models[]			models;
+	private final ExecutorService	executor;
+	private final int				window;
+	private final double[]			logProbs;
+	private final long[]			words;
+	private final long[]			zeroSentences;
+	private int						count;
+	private long					elapsed;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param smoothing
+	 *            Smoothing over the counted data
+	 * @param executor
+	 *            Executor to score the sentences on
+	 * @param window
+	 *            Maximum number of sentences being scored or waiting to be written at a time
+	 */
+	public BatchScorer(final Smoothing smoothing, final ExecutorService executor, final int window) {
+		this.smoothing = smoothing;
+		this.models = Arrays.stream(Models.values()).filter(smoothing::isSupported).toArray(Models[]::new);
+		this.executor = executor;
+		this.window = window;
+		this.logProbs = new double[this.models.length];
+		this.words = new long[this.models.length];
+		this.zeroSentences = new long[this.models.length];
+	}
+
+	/**
+	 * Score each line of the reader as a sentence and write the results in input order, one column of natural log probabilities for each type
+	 * of smoothing supported by the data followed by the sentence
+	 *
+	 * @param reader
+	 *            Reader with a sentence on each line
+	 * @param out
+	 *            Stream to write the results to
+	 * @throws IOException
+	 */
+	public void score(final BufferedReader reader, final PrintStream out) throws IOException {
+		final long start = System.nanoTime();
+		final Queue<Future<double[]>> pending = new ArrayDeque<>();
+		final Queue<String> sentences = new ArrayDeque<>();
+
+		// Write the header
+		final StringBuilder header = new StringBuilder();
+		for (final Models model : this.models) {
+			header.append(model).append('\t');
+		}
+		out.println(header.append("SENTENCE"));
+
+		// Submit each sentence, writing the oldest one once too many are pending
+		for (String line; (line = reader.readLine()) != null;) {
+			final String sentence = Tokenizer.normalize(line).trim();
+			sentences.add(sentence);
+			pending.add(this.executor.submit(() -> this.scoreSentence(sentence)));
+			if (pending.size() >= this.window) {
+				this.write(out, sentences.poll(), this.take(pending));
+			}
+		}
+
+		// Write the rest of the sentences
+		while (!pending.isEmpty()) {
+			this.write(out, sentences.poll(), this.take(pending));
+		}
+
+		this.elapsed = System.nanoTime() - start;
+	}
+
+	/**
+	 * Score a sentence with each type of smoothing
+	 *
+	 * @param sentence
+	 *            Transformed sentence
+	 * @return Natural log probability with each type of smoothing, in the order of {@link Models}
+	 */
+	private double[] scoreSentence(final String sentence) {
+		final double[] scores = new double[this.models.length];
+		for (int i = 0; i < this.models.length; i++) {
+			scores[i] = this.smoothing.getLogProbability(sentence, this.models[i]);
+		}
+
+		return scores;
+	}
+
+	/**
+	 * Write the scores of a sentence and add them to the totals. Sentences with zero probability are counted apart, so that the perplexity is of
+	 * the sentences that can be scored
+	 *
+	 * @param out
+	 *            Stream to write to
+	 * @param sentence
+	 *            Transformed sentence
+	 * @param scores
+	 *            Natural log probability with each type of smoothing
+	 */
+	private void write(final PrintStream out, final String sentence, final double[] scores) {
+		// Every word but the first is predicted
+		final int predicted = Math.max(new StringTokenizer(sentence).countTokens() - 1, 0);
+		final StringBuilder line = new StringBuilder();
+		for (int i = 0; i < this.models.length; i++) {
+			line.append(String.format("%.4f", scores[i])).append('\t');
+			if (Double.isInfinite(scores[i])) {
+				this.zeroSentences[i]++;
+			} else {
+				this.logProbs[i] += scores[i];
+				this.words[i] += predicted;
+			}
+		}
+
+		this.count++;
+		out.println(line.append(sentence));
+	}
+
+	/**
+	 * Wait for the oldest pending sentence
+	 *
+	 * @param pending
+	 *            Sentences in input order
+	 * @return Scores of the oldest sentence
+	 * @throws IOException
+	 */
+	private double[] take(final Queue<Future<double[]>> pending) throws IOException {
+		try {
+			return pending.poll().get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while scoring", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to score: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Print throughput and the perplexity of the sentences scored with each type of smoothing
+	 *
+	 * @param out
+	 *            Stream to print to
+	 */
+	public void printStatistics(final PrintStream out) {
+		// A batch with no sentences, or none with a word after the first, has no rate or perplexity to print
+		out.println("Sentences scored: " + this.count);
+		out.println("Throughput: "
+				+ (this.count > 0 && this.elapsed > 0 ? String.format("%.2f sentences/sec", this.count / (this.elapsed / 1e9)) : "n/a"));
+		for (int i = 0; i < this.models.length; i++) {
+			final String perplexity = this.words[i] > 0 ? String.format("%.4f", Math.exp(-this.logProbs[i] / this.words[i])) : "n/a";
+			out.println(this.models[i] + " perplexity: " + perplexity + ", sentences with zero probability: " + this.zeroSentences[i]);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks for counting bigrams over a corpus and for scoring its sentences with each model, to measure performance changes against
+ *
+ * @author Ekal.Golas
+ */
+public class Benchmark {
+	private final int	warmup;
+	private final int	iterations;
+	private int			sink;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param warmup
+	 *            Number of untimed runs of each benchmark, so that the JIT compiles the code being measured
+	 * @param iterations
+	 *            Number of timed runs of each benchmark
+	 */
+	public Benchmark(final int warmup, final int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Main function
+	 *
+	 * @param args
+	 *            Command line arguments: corpus file, and optionally the number of warmup and timed runs
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: Benchmark PATH_TO_CORPUS [WARMUP_RUNS] [TIMED_RUNS]");
+			return;
+		}
+
+		final String file = args[0];
+		final Benchmark benchmark = new Benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 3, args.length > 2 ? Integer.parseInt(args[2]) : 10);
+
+		// Counting unigrams and bigrams over the corpus
+		benchmark.measure("Parser.parse", () -> new Parser(file).parse());
+		final int threads = Runtime.getRuntime().availableProcessors();
+		benchmark.measure("Parser.parse " + threads + " threads", () -> new Parser(file, threads).parse());
+		benchmark.measure("Parser.parse order 5", () -> new Parser(file, 1, 5).parse());
+		benchmark.measure("Parser.parse sketch 4 MB", () -> new Parser(file, 1, 2, 4 << 20).parse());
+
+		// Loading the counts from a binary model instead of counting the corpus
+		final File binary = File.createTempFile("model", ".bin");
+		binary.deleteOnExit();
+		BinaryModel.write(new Parser(file).parse(), binary);
+		benchmark.measure("BinaryModel.read", () -> BinaryModel.read(binary));
+
+		// Scoring every line of the corpus with each model
+		final Smoothing smoothing = new Smoothing(new Parser(file).parse());
+		final List<String> sentences = readSentences(file);
+		for (final Models model : Models.values()) {
+			benchmark.measure("Smoothing.doSmoothing " + model + " x " + sentences.size(), () -> {
+				double total = 0;
+				for (final String sentence : sentences) {
+					total += smoothing.doSmoothing(sentence, model);
+				}
+
+				return total;
+			});
+		}
+	}
+
+	/**
+	 * Read each line of the corpus as a sentence, transformed the way the parser transforms the corpus
+	 *
+	 * @param file
+	 *            Corpus file
+	 * @return List of sentences
+	 * @throws IOException
+	 */
+	private static List<String> readSentences(final String file) throws IOException {
+		final List<String> sentences = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				sentences.add(Tokenizer.normalize(line));
+			}
+		}
+
+		return sentences;
+	}
+
+	/**
+	 * Run an operation untimed to warm up, then time it and print the average and best time per run
+	 *
+	 * @param name
+	 *            Name of the benchmark
+	 * @param operation
+	 *            Operation to time
+	 * @throws Exception
+	 */
+	public void measure(final String name, final Callable<?> operation) throws Exception {
+		for (int i = 0; i < this.warmup; i++) {
+			this.consume(operation.call());
+		}
+
+		long total = 0;
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < this.iterations; i++) {
+			final long start = System.nanoTime();
+			this.consume(operation.call());
+			final long elapsed = System.nanoTime() - start;
+			total += elapsed;
+			best = Math.min(best, elapsed);
+		}
+
+		System.out.println(String.format("%-50s avg %12.3f ms   best %12.3f ms", name, total / 1e6 / this.iterations, best / 1e6));
+	}
+
+	/**
+	 * Keep the result of an operation alive, so that the JIT cannot remove the work that produced it
+	 *
+	 * @param result
+	 *            Result of the operation
+	 */
+	private void consume(final Object result) {
+		this.sink ^= System.identityHashCode(result);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tables precomputed from the counts of a {@link ParserData}, so that the smoothed probability of a bigram is the lookup of its count and a few
+ * array reads. The Good-Turing counts are patched as bigrams are added, while the Kneser-Ney and Katz tables, which depend on every context,
+ * are computed on their first lookup, and again on the next lookup after bigrams are added, so that data that is only mapped or only scored
+ * with the other types of smoothing never pays for them
+ *
+ * @author Ekal.Golas
+ */
+public class BigramTables {
+	private final ParserData	parserData;
+	private final boolean		contexts;
+	private double[]			goodTuring;
+	private volatile boolean	stale;
+	private int[]				contextTotals;
+	private double[]			kneserNeyDiscounts;
+	private double[]			kneserNeyUnigrams;
+	private double[]			kneserNeyWeights;
+	private double				kneserNeyUnseen;
+	private double[]			katzRatios;
+	private double[]			katzUnigrams;
+	private double[]			katzWeights;
+
+	/**
+	 * Constructor that computes the Good-Turing counts, leaving the other tables to their first lookup
+	 *
+	 * @param parserData
+	 *            Counted data, with the frequency map built
+	 */
+	public BigramTables(final ParserData parserData) {
+		this(parserData, true);
+	}
+
+	/**
+	 * Constructor that computes the Good-Turing counts, leaving the other tables to their first lookup, or to none for data whose bigrams
+	 * cannot be listed
+	 *
+	 * @param parserData
+	 *            Counted data, with the frequency map built
+	 * @param contexts
+	 *            True to compute the Kneser-Ney and Katz tables, which need the bigrams following each word
+	 */
+	public BigramTables(final ParserData parserData, final boolean contexts) {
+		this.parserData = parserData;
+		this.contexts = contexts;
+		this.goodTuring = Discounts.goodTuring(parserData.frequencyMap);
+		this.stale = contexts;
+	}
+
+	/**
+	 * @return true if the Kneser-Ney and Katz tables can be computed
+	 */
+	public final boolean hasContexts() {
+		return this.contexts;
+	}
+
+	/**
+	 * Patch the tables after the count of a bigram has gone up by one, in constant time
+	 *
+	 * @param count
+	 *            New count of the bigram
+	 */
+	public void update(final int count) {
+		this.goodTuring = Discounts.update(this.parserData.frequencyMap, this.goodTuring, count);
+		this.stale = true;
+	}
+
+	/**
+	 * Compute the Kneser-Ney and Katz tables from all the counts
+	 */
+	private void compute() {
+		final ParserData parserData = this.parserData;
+		final int size = parserData.getVocabularySize();
+		this.contextTotals = new int[size];
+		this.kneserNeyDiscounts = Discounts.kneserNey(parserData.frequencyMap);
+		this.kneserNeyUnigrams = new double[size];
+		this.kneserNeyWeights = new double[size];
+		this.katzRatios = Discounts.katz(parserData.frequencyMap);
+		this.katzUnigrams = new double[size];
+		this.katzWeights = new double[size];
+
+		// Count the words following each word, and the distinct words preceding each word
+		final int[] continuations = new int[size];
+		parserData.forEachBigram((key, val) -> {
+			this.contextTotals[(int) (key >>> 32)] += val;
+			continuations[(int) key]++;
+		});
+
+		// The lowest order of Kneser-Ney is the discounted number of words a word follows, interpolated with a uniform distribution
+		final double[] continuationDiscounts = Discounts.kneserNey(this.countFrequencies(continuations));
+		final double distinct = parserData.getBigramSize();
+		double unseen = 0;
+		for (int id = 0; id < size; id++) {
+			final double discount = continuationDiscounts[Math.min(continuations[id], 3)];
+			this.kneserNeyUnigrams[id] = Math.max(continuations[id] - discount, 0) / distinct;
+			unseen += discount / distinct;
+		}
+
+		this.kneserNeyUnseen = unseen / size;
+		for (int id = 0; id < size; id++) {
+			this.kneserNeyUnigrams[id] += this.kneserNeyUnseen;
+		}
+
+		// Katz backs off to the unigram distribution
+		long totalUnigrams = 0;
+		for (int id = 0; id < size; id++) {
+			totalUnigrams += parserData.getUnigramCount(id);
+		}
+		for (int id = 0; id < size; id++) {
+			this.katzUnigrams[id] = parserData.getUnigramCount(id) / (double) totalUnigrams;
+		}
+
+		// Sum the discounts of the words following each word, and the probability mass Katz leaves for unseen bigrams
+		final double[] katzSeen = new double[size];
+		final double[] katzLower = new double[size];
+		parserData.forEachBigram((key, val) -> {
+			final int id1 = (int) (key >>> 32);
+			final int id2 = (int) key;
+			this.kneserNeyWeights[id1] += this.kneserNeyDiscounts[Math.min(val, 3)] / this.contextTotals[id1];
+			katzSeen[id1] += this.getKatzRatio(val) * val / this.contextTotals[id1];
+			katzLower[id1] += this.katzUnigrams[id2];
+		});
+
+		for (int id = 0; id < size; id++) {
+			this.katzWeights[id] = katzLower[id] < 1 ? (1 - katzSeen[id]) / (1 - katzLower[id]) : 0;
+		}
+	}
+
+	/**
+	 * Get the Good-Turing probability of a bigram
+	 *
+	 * @param count
+	 *            Number of occurrences of the bigram
+	 * @return Probability
+	 */
+	public double getGoodTuring(final int count) {
+		return (count < this.goodTuring.length ? this.goodTuring[count] : count + 1) / this.parserData.totalWords;
+	}
+
+	/**
+	 * Get the interpolated modified Kneser-Ney probability of a word following another
+	 *
+	 * @param token1
+	 *            Id of the first word, -1 if it has not been seen
+	 * @param token2
+	 *            Id of the second word, -1 if it has not been seen
+	 * @return Conditional probability
+	 */
+	public double getKneserNey(final int token1, final int token2) {
+		this.refresh();
+		final double lower = token2 < 0 ? this.kneserNeyUnseen : this.kneserNeyUnigrams[token2];
+		if (token1 < 0 || this.contextTotals[token1] == 0) {
+			return lower;
+		}
+
+		final int count = this.parserData.getBigramCount(token1, token2);
+		final double discounted = count > 0 ? (count - this.kneserNeyDiscounts[Math.min(count, 3)]) / this.contextTotals[token1] : 0;
+		return discounted + this.kneserNeyWeights[token1] * lower;
+	}
+
+	/**
+	 * Get the Katz backoff probability of a word following another
+	 *
+	 * @param token1
+	 *            Id of the first word, -1 if it has not been seen
+	 * @param token2
+	 *            Id of the second word, -1 if it has not been seen
+	 * @return Conditional probability, 0 if the second word has not been seen
+	 */
+	public double getKatz(final int token1, final int token2) {
+		this.refresh();
+		if (token2 < 0) {
+			return 0;
+		}
+
+		final int count = this.parserData.getBigramCount(token1, token2);
+		if (count > 0) {
+			return this.getKatzRatio(count) * count / this.contextTotals[token1];
+		}
+
+		return token1 < 0 || this.contextTotals[token1] == 0 ? this.katzUnigrams[token2] : this.katzWeights[token1] * this.katzUnigrams[token2];
+	}
+
+	/**
+	 * Compute the Kneser-Ney and Katz tables again if bigrams have been added since they were last computed. Lookups do this themselves, but
+	 * calling it once bigrams stop being added keeps it off the threads that look up
+	 */
+	public void refresh() {
+		if (!this.contexts) {
+			throw new IllegalStateException("Kneser-Ney and Katz backoff need the bigrams following each word");
+		}
+
+		if (this.stale) {
+			synchronized (this) {
+				if (this.stale) {
+					this.compute();
+					this.stale = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the ratio Katz backoff discounts a count by
+	 *
+	 * @param count
+	 *            Number of occurrences
+	 * @return Ratio
+	 */
+	private double getKatzRatio(final int count) {
+		return count <= Discounts.KATZ_LIMIT ? this.katzRatios[count] : 1;
+	}
+
+	/**
+	 * Count the words by their number of continuations
+	 *
+	 * @param continuations
+	 *            Number of distinct words preceding each word
+	 * @return Map from a number of continuations to the number of words with that many
+	 */
+	private Map<Integer, Integer> countFrequencies(final int[] continuations) {
+		final Map<Integer, Integer> frequencyMap = new HashMap<>();
+		for (final int continuation : continuations) {
+			frequencyMap.merge(continuation, 1, Integer::sum);
+		}
+
+		return frequencyMap;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class to write counted parser data to a binary file of sorted arrays, and to map it back read only without counting the corpus again. The
+ * file holds the words sorted by their bytes, with the position of a word as its id, the count of each word, the bigram keys sorted with their
+ * counts, and the frequency map. Lookups read the mapped file, so processes that load the same file share its pages
+ *
+ * @author Ekal.Golas
+ */
+public class BinaryModel {
+	private static final int	MAGIC		= 0x4C4D4247;
+	private static final int	VERSION		= 1;
+	private static final int	HEADER_SIZE	= 32;
+
+	/**
+	 * Check if a file is a binary model
+	 *
+	 * @param file
+	 *            Model or corpus file
+	 * @return True if the file starts with the header of a binary model
+	 * @throws IOException
+	 */
+	public static boolean isBinary(final File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			return file.length() >= HEADER_SIZE && input.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Write the unigram and bigram counts of parser data to a file. Counts of n-grams of higher orders are not written
+	 *
+	 * @param parserData
+	 *            Counted data, with the frequency map built
+	 * @param file
+	 *            File to write to
+	 * @throws IOException
+	 */
+	public static void write(final ParserData parserData, final File file) throws IOException {
+		// Sort the words by their bytes, so that a word is found by binary search and its position is its id
+		final int size = parserData.getVocabularySize();
+		final byte[][] words = new byte[size][];
+		final Integer[] sorted = new Integer[size];
+		for (int id = 0; id < size; id++) {
+			words[id] = parserData.getWord(id).getBytes(StandardCharsets.UTF_8);
+			sorted[id] = id;
+		}
+
+		Arrays.sort(sorted, (id1, id2) -> compare(words[id1], words[id2]));
+		final int[] ids = new int[size];
+		int bytes = 0;
+		for (int i = 0; i < size; i++) {
+			ids[sorted[i]] = i;
+			bytes += words[sorted[i]].length;
+		}
+
+		// Re-key the bigrams with the new ids, and sort them
+		final long[] keys = new long[parserData.getBigramSize()];
+		final int[] next = { 0 };
+		parserData.forEachBigram((key, val) -> keys[next[0]++] = ParserData.key(ids[(int) (key >>> 32)], ids[(int) key]));
+		Arrays.sort(keys);
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(size);
+			output.writeInt(keys.length);
+			output.writeInt(parserData.totalWords);
+			output.writeInt(parserData.frequencyMap.size());
+			output.writeInt(bytes);
+			output.writeInt(0);
+
+			// Write the frequency map, then the count and the offset of each word in id order, then the words
+			for (final Map.Entry<Integer, Integer> entry : parserData.frequencyMap.entrySet()) {
+				output.writeInt(entry.getKey());
+				output.writeInt(entry.getValue());
+			}
+			for (int i = 0; i < size; i++) {
+				output.writeInt(parserData.getUnigramCount(sorted[i]));
+			}
+
+			int offset = 0;
+			for (int i = 0; i < size; i++) {
+				output.writeInt(offset);
+				offset += words[sorted[i]].length;
+			}
+			output.writeInt(offset);
+			for (int i = 0; i < size; i++) {
+				output.write(words[sorted[i]]);
+			}
+
+			// Pad to 8 bytes, then write the bigram keys and their counts in key order
+			final long end = HEADER_SIZE + 8L * parserData.frequencyMap.size() + 4L * size + 4L * (size + 1) + bytes;
+			for (int i = padding(end); i > 0; i--) {
+				output.writeByte(0);
+			}
+			for (final long key : keys) {
+				output.writeLong(key);
+			}
+			for (final long key : keys) {
+				output.writeInt(parserData.getBigramCount(sorted[(int) (key >>> 32)], sorted[(int) key]));
+			}
+		}
+	}
+
+	/**
+	 * Map a binary model read only
+	 *
+	 * @param file
+	 *            File written by {@link #write(ParserData, File)}
+	 * @return Parser data that looks up the counts in the mapped file. Only the Good-Turing counts are computed from the small frequency map,
+	 *         and the Kneser-Ney and Katz tables are left to their first lookup, so that loading does not scan the bigrams
+	 * @throws IOException
+	 */
+	public static ParserData read(final File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not a binary model of a supported version: " + file.getName());
+			}
+
+			final int size = header.getInt();
+			final int bigrams = header.getInt();
+			final int totalWords = header.getInt();
+			final int frequencies = header.getInt();
+			final int bytes = header.getInt();
+
+			// The frequency map is small, so it is read into memory
+			final long countsOffset = HEADER_SIZE + 8L * frequencies;
+			final ByteBuffer frequencyBuffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, countsOffset - HEADER_SIZE);
+			final Map<Integer, Integer> frequencyMap = new HashMap<>();
+			for (int i = 0; i < frequencies; i++) {
+				frequencyMap.put(frequencyBuffer.getInt(), frequencyBuffer.getInt());
+			}
+
+			// Map the word counts and offsets, the words, the bigram keys and the bigram counts, each on its own
+			final long offsetsOffset = countsOffset + 4L * size;
+			final long wordsOffset = offsetsOffset + 4L * (size + 1);
+			final long keysOffset = wordsOffset + bytes + padding(wordsOffset + bytes);
+			final long bigramCountsOffset = keysOffset + 8L * bigrams;
+			final MappedParserData parserData = new MappedParserData(frequencyMap, totalWords,
+					channel.map(FileChannel.MapMode.READ_ONLY, countsOffset, 4L * size).asIntBuffer(),
+					channel.map(FileChannel.MapMode.READ_ONLY, offsetsOffset, 4L * (size + 1)).asIntBuffer(),
+					channel.map(FileChannel.MapMode.READ_ONLY, wordsOffset, bytes),
+					channel.map(FileChannel.MapMode.READ_ONLY, keysOffset, 8L * bigrams).asLongBuffer(),
+					channel.map(FileChannel.MapMode.READ_ONLY, bigramCountsOffset, 4L * bigrams).asIntBuffer());
+			parserData.tables = new BigramTables(parserData);
+
+			return parserData;
+		}
+	}
+
+	/**
+	 * Compare the bytes of two words as unsigned values, the order the words are sorted in
+	 *
+	 * @param word1
+	 *            Bytes of the first word
+	 * @param word2
+	 *            Bytes of the second word
+	 * @return Negative, zero or positive as the first word sorts before, with or after the second
+	 */
+	private static int compare(final byte[] word1, final byte[] word2) {
+		final int length = Math.min(word1.length, word2.length);
+		for (int i = 0; i < length; i++) {
+			if (word1[i] != word2[i]) {
+				return (word1[i] & 0xFF) - (word2[i] & 0xFF);
+			}
+		}
+
+		return word1.length - word2.length;
+	}
+
+	/**
+	 * Get the number of bytes to pad an offset with, to align it to 8 bytes
+	 *
+	 * @param offset
+	 *            Offset in the file
+	 * @return Padding
+	 */
+	private static int padding(final long offset) {
+		return (int) (-offset & 7);
+	}
+}
\ No newline at end of file
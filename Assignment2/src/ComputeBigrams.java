@@ -1,4 +1,10 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -25,6 +31,12 @@ public class ComputeBigrams {
 		options.addOption("file", "filePath", true, "Absolute or relative file path to the corpus");
 		options.addOption("s1", "sentence1", true, "Sentence 1");
 		options.addOption("s2", "sentence2", true, "Sentence 2");
+		options.addOption("threads", "threads", true, "Number of threads to count the corpus on, 1 by default, or to score the sentences of a batch on");
+		options.addOption("order", "order", true, "Highest order of n-grams to compute sentence probabilities with, from 2 to 5, 2 by default");
+		options.addOption("batch", "batch", true, "File with a sentence on each line to score with each type of smoothing, - for standard input");
+		options.addOption("compile", "compile", true, "Write the counts to a binary model file that loads without counting the corpus, and exit");
+		options.addOption("sketch", "sketch", true, "Count bigrams approximately in a count-min sketch of this many megabytes, rather than exactly");
+		options.addOption("append", "append", true, "File of text to add to the counts of the corpus, without counting the corpus again");
 
 		final CommandLineParser commandLineParser = new DefaultParser();
 		CommandLine cmd = null;
@@ -47,16 +59,45 @@ public class ComputeBigrams {
 			return;
 		}
 
-		// Try to parse the input file
+		// Try to map the input file if it is a binary model, else parse it
 		ParserData parserData = null;
 		try {
-			final Parser parser = new Parser(filePath);
-			parserData = parser.parse();
-		} catch (final IOException e) {
+			if (BinaryModel.isBinary(new File(filePath))) {
+				parserData = BinaryModel.read(new File(filePath));
+			} else {
+				final int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads")) : 1;
+				final int order = cmd.hasOption("order") ? Integer.parseInt(cmd.getOptionValue("order")) : 2;
+				final long sketchBytes = cmd.hasOption("sketch") ? (long) (Double.parseDouble(cmd.getOptionValue("sketch")) * (1 << 20)) : 0;
+				final Parser parser = new Parser(filePath, threads, order, sketchBytes);
+				parserData = parser.parse();
+			}
+		} catch (final IOException | IllegalArgumentException e) {
 			System.out.println("Error while parsing: " + e.getMessage());
 			return;
 		}
 
+		// Add the text to append to the counts
+		if (cmd.hasOption("append") && !append(cmd, parserData)) {
+			return;
+		}
+
+		// Write the counts if asked to, rather than comparing sentences
+		if (cmd.hasOption("compile")) {
+			compile(cmd, parserData);
+			return;
+		}
+
+		// Score each sentence of the batch if provided, rather than comparing two sentences
+		if (cmd.hasOption("batch")) {
+			scoreBatch(cmd, parserData);
+			return;
+		}
+
+		// Report how far the counts of a sketch can be off
+		if (parserData instanceof SketchParserData) {
+			printErrorBounds(((SketchParserData) parserData).getSketch());
+		}
+
 		// Get sentences
 		final String[] sentences = getSentences(cmd);
 
@@ -65,6 +106,91 @@ public class ComputeBigrams {
 		bigrams.compareAndDisplay(sentences[0], sentences[1], parserData);
 	}
 
+	/**
+	 * Print the size of a sketch of the bigrams and how far above the true counts its estimates can be
+	 *
+	 * @param sketch
+	 *            Sketch the bigrams are counted in
+	 */
+	private static void printErrorBounds(final CountMinSketch sketch) {
+		System.out.println("Bigrams counted in a sketch of " + sketch.getDepth() + " x " + sketch.getWidth() + " counters (" + sketch.getBytes()
+				+ " bytes)");
+		System.out.println("Each bigram count is at most " + String.format("%.2f", sketch.getErrorBound()) + " above the true count, with probability "
+				+ String.format("%.4f", sketch.getConfidence()) + "\n");
+	}
+
+	/**
+	 * Add each line of a file to the counts, updating them in place rather than counting the corpus again
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param parserData
+	 *            Counted data
+	 * @return True if the file was added
+	 */
+	private static boolean append(final CommandLine cmd, final ParserData parserData) {
+		try (BufferedReader reader = new BufferedReader(new FileReader(cmd.getOptionValue("append")))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				Parser.update(parserData, line);
+			}
+
+			// Compute the tables again now, rather than on the first lookup, which may be made by several scoring threads at once
+			if (parserData.ngrams != null) {
+				parserData.ngrams.refresh();
+			}
+			if (parserData.tables != null && parserData.tables.hasContexts()) {
+				parserData.tables.refresh();
+			}
+
+			return true;
+		} catch (final IOException | IllegalStateException e) {
+			System.out.println("Unable to append: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Write the counts to a binary model file that loads without counting the corpus
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param parserData
+	 *            Counted data
+	 */
+	private static void compile(final CommandLine cmd, final ParserData parserData) {
+		final File file = new File(cmd.getOptionValue("compile"));
+		try {
+			BinaryModel.write(parserData, file);
+			System.out.println("Binary model written to the file: " + file.getName());
+		} catch (final IOException | IllegalStateException e) {
+			System.out.println("Unable to write the binary model: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Score each sentence of a batch with each type of smoothing, and print the perplexity and throughput
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param parserData
+	 *            Counted data
+	 */
+	private static void scoreBatch(final CommandLine cmd, final ParserData parserData) {
+		final int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads")) : Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final String batch = cmd.getOptionValue("batch");
+		try (BufferedReader reader = new BufferedReader("-".equals(batch) ? new InputStreamReader(System.in) : new FileReader(batch))) {
+			final BatchScorer batchScorer = new BatchScorer(new Smoothing(parserData), executor, threads * 4);
+			batchScorer.score(reader, System.out);
+			System.out.println();
+			batchScorer.printStatistics(System.out);
+		} catch (final IOException e) {
+			System.out.println("Unable to score the batch: " + e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * Compares two sentences and prints the results with probability tables
 	 *
@@ -78,13 +204,17 @@ public class ComputeBigrams {
 	private void compareAndDisplay(String sentence1, String sentence2, final ParserData parserData) {
 		// Remove special characters, trim white spaces and convert to lower case
 		final Smoothing smoothing = new Smoothing(parserData);
-		sentence1 = sentence1.replaceAll("[^a-zA-Z0-9. ]", "").replaceAll("\\s+", " ").toLowerCase();
-		sentence2 = sentence2.replaceAll("[^a-zA-Z0-9. ]", "").replaceAll("\\s+", " ").toLowerCase();
+		sentence1 = Tokenizer.normalize(sentence1);
+		sentence2 = Tokenizer.normalize(sentence2);
 
 		// Compare sentences with each type of smoothing
 		this.compareSentence(sentence1, sentence2, Models.NO_SMOOTHING, smoothing);
 		this.compareSentence(sentence1, sentence2, Models.ADD_ONE_SMOOTHING, smoothing);
 		this.compareSentence(sentence1, sentence2, Models.GOOD_TURING, smoothing);
+		if (smoothing.isSupported(Models.KNESER_NEY)) {
+			this.compareSentence(sentence1, sentence2, Models.KNESER_NEY, smoothing);
+			this.compareSentence(sentence1, sentence2, Models.KATZ_BACKOFF, smoothing);
+		}
 
 		// Construct the table with the bigram probabilities for the sentences with no smoothing
 		System.out.println(Models.NO_SMOOTHING);
@@ -0,0 +1,128 @@
+/**
+ * Count-min sketch of long keys with conservative update, for counting more distinct keys than fit in memory. Each row of counters is indexed
+ * by its own hash of the key, and a count is estimated as the smallest of the counters of the key. An estimate is never below the true count,
+ * and is above it by at most e / width of the total count with probability 1 - e ^ -depth
+ *
+ * @author Ekal.Golas
+ */
+public class CountMinSketch {
+	private static final int	DEPTH	= 5;
+
+	private final int[]			counters;
+	private final int			width;
+	private final int			mask;
+	private long				total;
+
+	/**
+	 * Constructor that sizes the sketch to a memory budget
+	 *
+	 * @param bytes
+	 *            Memory for the counters, rounded down so that each row is a power of 2 wide
+	 */
+	public CountMinSketch(final long bytes) {
+		final long width = Math.max(bytes / (4L * DEPTH), 1);
+		if (width > Integer.MAX_VALUE / DEPTH) {
+			throw new IllegalArgumentException("Memory for the sketch is too large: " + bytes);
+		}
+
+		this.width = Integer.highestOneBit((int) width);
+		this.mask = this.width - 1;
+		this.counters = new int[DEPTH * this.width];
+	}
+
+	/**
+	 * Count an occurrence of a key. Only the counters at the smallest value are incremented, which keeps the estimate of every other key as
+	 * tight as it can be
+	 *
+	 * @param key
+	 *            Key
+	 * @return Estimated count of the key, one more than before
+	 */
+	public int add(final long key) {
+		final int estimate = this.get(key) + 1;
+		for (int row = 0; row < DEPTH; row++) {
+			final int slot = this.slot(key, row);
+			if (this.counters[slot] < estimate) {
+				this.counters[slot] = estimate;
+			}
+		}
+
+		this.total++;
+		return estimate;
+	}
+
+	/**
+	 * Get the estimated count of a key
+	 *
+	 * @param key
+	 *            Key
+	 * @return Estimated count, never below the true count
+	 */
+	public int get(final long key) {
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			estimate = Math.min(estimate, this.counters[this.slot(key, row)]);
+		}
+
+		return estimate;
+	}
+
+	/**
+	 * @return the number of counters in each row
+	 */
+	public final int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * @return the number of rows of counters
+	 */
+	public final int getDepth() {
+		return DEPTH;
+	}
+
+	/**
+	 * @return the number of bytes of the counters
+	 */
+	public final long getBytes() {
+		return 4L * this.counters.length;
+	}
+
+	/**
+	 * @return the number of occurrences of all keys
+	 */
+	public final long getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * @return the most an estimate can be above the true count, with probability {@link #getConfidence()}
+	 */
+	public double getErrorBound() {
+		return Math.E / this.width * this.total;
+	}
+
+	/**
+	 * @return the probability that an estimate is within {@link #getErrorBound()} of the true count
+	 */
+	public double getConfidence() {
+		return 1 - Math.exp(-DEPTH);
+	}
+
+	/**
+	 * Get the counter of a key in a row, mixing the key with the row so that each row hashes independently
+	 *
+	 * @param key
+	 *            Key
+	 * @param row
+	 *            Row of counters
+	 * @return Index of the counter
+	 */
+	private int slot(final long key, final int row) {
+		long hash = key + (row + 1) * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ hash >>> 30) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ hash >>> 27) * 0x94D049BB133111EBL;
+		hash ^= hash >>> 31;
+		return row * this.width + ((int) hash & this.mask);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Discounts computed from the number of n-grams that occur each number of times, shared by the bigram and n-gram tables
+ *
+ * @author Ekal.Golas
+ */
+public final class Discounts {
+	/**
+	 * Counts up to which Katz backoff discounts with Good-Turing, as counts above it are considered reliable
+	 */
+	public static final int	KATZ_LIMIT	= 5;
+
+	/**
+	 * Private constructor, as this class only has static methods
+	 */
+	private Discounts() {
+	}
+
+	/**
+	 * Get the absolute discounts of modified Kneser-Ney, as estimated by Chen and Goodman
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times
+	 * @return Discount for n-grams that occur 0, 1, 2, and 3 or more times, by index
+	 */
+	public static double[] kneserNey(final Map<Integer, Integer> frequencyMap) {
+		final double n1 = frequencyMap.getOrDefault(1, 0);
+		final double n2 = frequencyMap.getOrDefault(2, 0);
+		final double y = n1 + 2 * n2 > 0 ? n1 / (n1 + 2 * n2) : 0.5;
+
+		// Dk is k - (k + 1) * Y * N(k + 1) / Nk, kept between 0 and k
+		final double[] discounts = new double[4];
+		for (int k = 1; k <= 3; k++) {
+			final double nk = frequencyMap.getOrDefault(k, 0);
+			final double discount = nk > 0 ? k - (k + 1) * y * frequencyMap.getOrDefault(k + 1, 0) / nk : y;
+			discounts[k] = Math.max(0, Math.min(k, discount));
+		}
+
+		return discounts;
+	}
+
+	/**
+	 * Get the ratios Katz backoff discounts the counts up to {@link #KATZ_LIMIT} by
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times
+	 * @return Ratio for each count up to the limit, by index
+	 */
+	public static double[] katz(final Map<Integer, Integer> frequencyMap) {
+		final double n1 = frequencyMap.getOrDefault(1, 0);
+		final double r = n1 > 0 ? (KATZ_LIMIT + 1) * frequencyMap.getOrDefault(KATZ_LIMIT + 1, 0) / n1 : 0;
+
+		// The ratio is (c* / c - r) / (1 - r), and counts are not discounted where it is not between 0 and 1
+		final double[] ratios = new double[KATZ_LIMIT + 1];
+		for (int c = 1; c <= KATZ_LIMIT; c++) {
+			final double nc = frequencyMap.getOrDefault(c, 0);
+			final double cStar = nc > 0 ? (c + 1) * frequencyMap.getOrDefault(c + 1, 0) / nc : c;
+			final double ratio = (cStar / c - r) / (1 - r);
+			ratios[c] = ratio > 0 && ratio <= 1 ? ratio : 1;
+		}
+
+		return ratios;
+	}
+
+	/**
+	 * Get the Good-Turing count c* of an n-gram for each number of occurrences up to the highest. c* is (c + 1) * N(c + 1) / Nc, taking a
+	 * missing N as 1
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times
+	 * @return c* for each number of occurrences, by index
+	 */
+	public static double[] goodTuring(final Map<Integer, Integer> frequencyMap) {
+		int highest = 0;
+		for (final int count : frequencyMap.keySet()) {
+			highest = Math.max(highest, count);
+		}
+
+		final double[] counts = new double[highest + 1];
+		for (int c = 0; c <= highest; c++) {
+			counts[c] = goodTuring(frequencyMap, c);
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Update the frequency map and the Good-Turing counts after the count of an n-gram has gone up by one. Only the counts next to the old and
+	 * new counts change, so the update takes constant time
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times, updated
+	 * @param goodTuring
+	 *            c* for each number of occurrences, by index
+	 * @param count
+	 *            New count of the n-gram
+	 * @return c* for each number of occurrences, grown if the new count is beyond them
+	 */
+	public static double[] update(final Map<Integer, Integer> frequencyMap, final double[] goodTuring, final int count) {
+		count(frequencyMap, count);
+
+		// c* of a count uses N of the count and of the one above it
+		final double[] counts = count < goodTuring.length ? goodTuring : Arrays.copyOf(goodTuring, count + 1);
+		for (int c = Math.max(count - 2, 0); c <= count; c++) {
+			counts[c] = goodTuring(frequencyMap, c);
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Update the frequency map after the count of an n-gram has gone up by one, moving the n-gram from its old count to the new one. An
+	 * old count that no n-gram is known to have is left as it is, as happens with estimated counts
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times, updated
+	 * @param count
+	 *            New count of the n-gram
+	 */
+	public static void count(final Map<Integer, Integer> frequencyMap, final int count) {
+		frequencyMap.computeIfPresent(count - 1, (c, n) -> n > 1 ? n - 1 : null);
+		frequencyMap.merge(count, 1, Integer::sum);
+	}
+
+	/**
+	 * Get the Good-Turing count c* for a number of occurrences
+	 *
+	 * @param frequencyMap
+	 *            Number of n-grams that occur each number of times
+	 * @param c
+	 *            Number of occurrences
+	 * @return c*
+	 */
+	private static double goodTuring(final Map<Integer, Integer> frequencyMap, final int c) {
+		final double n = frequencyMap.getOrDefault(c + 1, 1);
+		return (c + 1) * n / (double) frequencyMap.getOrDefault(c, 1);
+	}
+}
\ No newline at end of file
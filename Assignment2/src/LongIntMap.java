@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * Map from non negative long keys to int counts, backed by open addressing with linear probing so that neither keys nor counts are boxed
+ *
+ * @author Ekal.Golas
+ */
+public class LongIntMap {
+	private static final long	EMPTY	= -1L;
+
+	private long[]				keys;
+	private int[]				values;
+	private int					size;
+
+	/**
+	 * Callback for each entry of the map
+	 */
+	public interface Entry {
+		/**
+		 * @param key
+		 *            Key of the entry
+		 * @param value
+		 *            Value of the entry
+		 */
+		void accept(long key, int value);
+	}
+
+	/**
+	 * Default constructor
+	 */
+	public LongIntMap() {
+		this(1024);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            Number of slots to start with, a power of 2
+	 */
+	public LongIntMap(final int capacity) {
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	/**
+	 * Get the value of a key
+	 *
+	 * @param key
+	 *            Non negative key
+	 * @return Value, 0 if the key is not in the map
+	 */
+	public int get(final long key) {
+		final int slot = this.slot(key);
+		return this.keys[slot] == EMPTY ? 0 : this.values[slot];
+	}
+
+	/**
+	 * Add to the value of a key, putting the key in the map if it is not in it
+	 *
+	 * @param key
+	 *            Non negative key
+	 * @param delta
+	 *            Amount to add
+	 * @return Value after adding
+	 */
+	public int add(final long key, final int delta) {
+		int slot = this.slot(key);
+		if (this.keys[slot] == EMPTY) {
+			// Grow the table when it is half full, so that probes stay short
+			if (2 * (this.size + 1) > this.keys.length) {
+				this.resize();
+				slot = this.slot(key);
+			}
+
+			this.keys[slot] = key;
+			this.size++;
+		}
+
+		this.values[slot] += delta;
+		return this.values[slot];
+	}
+
+	/**
+	 * @return the number of keys in the map
+	 */
+	public final int size() {
+		return this.size;
+	}
+
+	/**
+	 * Call back for each entry of the map
+	 *
+	 * @param entry
+	 *            Callback
+	 */
+	public void forEach(final Entry entry) {
+		for (int slot = 0; slot < this.keys.length; slot++) {
+			if (this.keys[slot] != EMPTY) {
+				entry.accept(this.keys[slot], this.values[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Find the slot of a key, or the empty slot where it would go
+	 *
+	 * @param key
+	 *            Key to find
+	 * @return Slot in the table
+	 */
+	private int slot(final long key) {
+		final int mask = this.keys.length - 1;
+		int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 33) & mask;
+		while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+			slot = slot + 1 & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Double the hash table and re-insert the entries
+	 */
+	private void resize() {
+		final long[] oldKeys = this.keys;
+		final int[] oldValues = this.values;
+		this.keys = new long[oldKeys.length * 2];
+		this.values = new int[this.keys.length];
+		Arrays.fill(this.keys, EMPTY);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				final int slot = this.slot(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+}
\ No newline at end of file
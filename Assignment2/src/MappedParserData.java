@@ -0,0 +1,146 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Parser data that looks up counts in the sorted arrays of a read only mapped {@link BinaryModel}, rather than in maps on the heap. Words are
+ * found by binary search over their bytes, and bigrams by binary search over their keys
+ *
+ * @author Ekal.Golas
+ */
+public class MappedParserData extends ParserData {
+	private final IntBuffer		unigrams;
+	private final IntBuffer		offsets;
+	private final ByteBuffer	words;
+	private final LongBuffer	keys;
+	private final IntBuffer		counts;
+
+	/**
+	 * Constructor
+	 *
+	 * @param frequencyMap
+	 *            Number of bigrams that occur each number of times
+	 * @param totalWords
+	 *            Number of occurrences of all bigrams
+	 * @param unigrams
+	 *            Count of each word, by id
+	 * @param offsets
+	 *            Offset of each word in the bytes of the words, by id, followed by the length of the bytes
+	 * @param words
+	 *            Bytes of the words, sorted
+	 * @param keys
+	 *            Bigram keys, sorted
+	 * @param counts
+	 *            Count of each bigram, in key order
+	 */
+	public MappedParserData(final Map<Integer, Integer> frequencyMap, final int totalWords, final IntBuffer unigrams, final IntBuffer offsets,
+			final ByteBuffer words, final LongBuffer keys, final IntBuffer counts) {
+		super(frequencyMap, totalWords);
+		this.unigrams = unigrams;
+		this.offsets = offsets;
+		this.words = words;
+		this.keys = keys;
+		this.counts = counts;
+	}
+
+	@Override
+	public int getId(final String word) {
+		final byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = this.unigrams.limit() - 1;
+		while (low <= high) {
+			final int mid = low + high >>> 1;
+			final int comparison = this.compare(mid, bytes);
+			if (comparison < 0) {
+				low = mid + 1;
+			} else if (comparison > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public String getWord(final int id) {
+		final int offset = this.offsets.get(id);
+		final byte[] bytes = new byte[this.offsets.get(id + 1) - offset];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.words.get(offset + i);
+		}
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int getVocabularySize() {
+		return this.unigrams.limit();
+	}
+
+	@Override
+	public int getBigramSize() {
+		return this.keys.limit();
+	}
+
+	@Override
+	public void forEachBigram(final LongIntMap.Entry entry) {
+		for (int i = 0; i < this.keys.limit(); i++) {
+			entry.accept(this.keys.get(i), this.counts.get(i));
+		}
+	}
+
+	@Override
+	public int getUnigramCount(final int id) {
+		return id < 0 ? 0 : this.unigrams.get(id);
+	}
+
+	@Override
+	public int getBigramCount(final int id1, final int id2) {
+		if (id1 < 0 || id2 < 0) {
+			return 0;
+		}
+
+		final long key = key(id1, id2);
+		int low = 0;
+		int high = this.keys.limit() - 1;
+		while (low <= high) {
+			final int mid = low + high >>> 1;
+			final long probe = this.keys.get(mid);
+			if (probe < key) {
+				low = mid + 1;
+			} else if (probe > key) {
+				high = mid - 1;
+			} else {
+				return this.counts.get(mid);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Compare the bytes of a word in the file with the bytes of another word as unsigned values, the order the words are sorted in
+	 *
+	 * @param id
+	 *            Id of the word in the file
+	 * @param bytes
+	 *            Bytes of the other word
+	 * @return Negative, zero or positive as the word in the file sorts before, with or after the other
+	 */
+	private int compare(final int id, final byte[] bytes) {
+		final int offset = this.offsets.get(id);
+		final int length = this.offsets.get(id + 1) - offset;
+		for (int i = 0; i < Math.min(length, bytes.length); i++) {
+			final byte b = this.words.get(offset + i);
+			if (b != bytes[i]) {
+				return (b & 0xFF) - (bytes[i] & 0xFF);
+			}
+		}
+
+		return length - bytes.length;
+	}
+}
\ No newline at end of file
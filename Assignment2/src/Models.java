@@ -6,5 +6,7 @@
 public enum Models {
 	NO_SMOOTHING,
 	ADD_ONE_SMOOTHING,
-	GOOD_TURING
+	GOOD_TURING,
+	KNESER_NEY,
+	KATZ_BACKOFF
 }
\ No newline at end of file
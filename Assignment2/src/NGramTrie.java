@@ -0,0 +1,414 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of the counts of n-grams up to an order. Words are keyed in reverse order, from the last word of an n-gram back to its first, so that
+ * walking back from a word gives the counts of the n-grams of every order ending with it in one traversal. Each node is a slot in parallel int
+ * arrays, and the children of all nodes share one map keyed by the parent and the word packed into a long. Once the tables have been computed,
+ * the n-grams added are patched into the Good-Turing counts as they are counted, and the Kneser-Ney and Katz tables are computed again on
+ * their next lookup
+ *
+ * @author Ekal.Golas
+ */
+public class NGramTrie {
+	private static final int					ROOT	= 0;
+
+	private final int							order;
+	private final LongIntMap					children;
+	private List<Map<Integer, Integer>>			frequencyMaps;
+	private List<double[]>						goodTuring;
+	private long[]								totals;
+	private int[]								parents;
+	private int[]								words;
+	private int[]								counts;
+	private int									size;
+	private int									vocabularySize;
+	private double[]							kneserNeyMasses;
+	private double[]							kneserNeyWeights;
+	private double[]							katzProbs;
+	private double[]							katzWeights;
+	private volatile boolean					stale;
+
+	/**
+	 * Constructor
+	 *
+	 * @param order
+	 *            Highest order of n-grams to count
+	 */
+	public NGramTrie(final int order) {
+		this.order = order;
+		this.children = new LongIntMap();
+		this.frequencyMaps = new ArrayList<>();
+		this.goodTuring = new ArrayList<>();
+		this.totals = new long[order];
+		this.parents = new int[1024];
+		this.words = new int[1024];
+		this.counts = new int[1024];
+		this.parents[ROOT] = -1;
+		this.size = 1;
+	}
+
+	/**
+	 * @return the highest order of n-grams counted
+	 */
+	public final int getOrder() {
+		return this.order;
+	}
+
+	/**
+	 * @return the number of distinct n-grams of all orders
+	 */
+	public final int size() {
+		return this.size - 1;
+	}
+
+	/**
+	 * Count the n-grams ending with a token, walking back through the tokens before it
+	 *
+	 * @param tokens
+	 *            Ids of tokens, -1 where the input starts
+	 * @param end
+	 *            Index of the last token of the n-grams
+	 * @param length
+	 *            Highest order of n-grams to count
+	 * @param skip
+	 *            Number of lowest orders not to count, because they have been counted already
+	 */
+	public void add(final int[] tokens, final int end, final int length, final int skip) {
+		int node = ROOT;
+		for (int depth = 1; depth <= length && end - depth >= -1 && tokens[end - depth + 1] >= 0; depth++) {
+			node = this.getOrAddChild(node, tokens[end - depth + 1]);
+			if (depth > skip) {
+				this.counts[node]++;
+				if (!this.goodTuring.isEmpty()) {
+					this.update(depth, this.counts[node]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the counts of the n-grams of every order ending with a token
+	 *
+	 * @param tokens
+	 *            Ids of tokens, -1 for a word that has not been seen
+	 * @param end
+	 *            Index of the last token of the n-grams
+	 * @param length
+	 *            Highest order of n-grams to look up
+	 * @param counts
+	 *            Filled with the count of the n-gram of order i + 1 at index i, 0 if it has not been seen
+	 */
+	public void getCounts(final int[] tokens, final int end, final int length, final int[] counts) {
+		Arrays.fill(counts, 0, length, 0);
+		int node = ROOT;
+		for (int depth = 1; depth <= length && end - depth >= -1 && tokens[end - depth + 1] >= 0; depth++) {
+			node = this.children.get(key(node, tokens[end - depth + 1]));
+			if (node == ROOT) {
+				break;
+			}
+
+			counts[depth - 1] = this.counts[node];
+		}
+	}
+
+	/**
+	 * Get the Good-Turing probability of an n-gram
+	 *
+	 * @param n
+	 *            Order of the n-gram
+	 * @param count
+	 *            Number of occurrences of the n-gram
+	 * @return Probability
+	 */
+	public double getGoodTuring(final int n, final int count) {
+		this.refresh();
+		final double[] counts = this.goodTuring.get(n - 1);
+		return (count < counts.length ? counts[count] : count + 1) / this.totals[n - 1];
+	}
+
+	/**
+	 * Get the interpolated modified Kneser-Ney probability of a token given the tokens before it. The n-grams ending with the token and their
+	 * contexts are found in one walk back from it, from the lowest order up
+	 *
+	 * @param tokens
+	 *            Ids of tokens, -1 for a word that has not been seen
+	 * @param end
+	 *            Index of the token
+	 * @param length
+	 *            Highest order of n-grams to use
+	 * @return Conditional probability
+	 */
+	public double getKneserNey(final int[] tokens, final int end, final int length) {
+		this.refresh();
+
+		// The lowest order is interpolated with a uniform distribution, which is all a token that has not been seen gets from it
+		double probability = 1.0 / this.vocabularySize;
+		int node = ROOT;
+		int context = ROOT;
+		for (int depth = 1; depth <= length && end - depth >= -1; depth++) {
+			// The context of an n-gram is reached from the token before it by the same words the n-gram is reached by
+			final int token = tokens[end - depth + 1];
+			if (depth > 1) {
+				context = token < 0 ? ROOT : this.children.get(key(context, token));
+				if (context == ROOT) {
+					break;
+				}
+			}
+
+			// Once an n-gram has not been seen, the ones of higher orders have not been either, but their contexts may have
+			node = token < 0 || node == ROOT && depth > 1 ? ROOT : this.children.get(key(node, token));
+			probability = (node == ROOT ? 0 : this.kneserNeyMasses[node]) + this.kneserNeyWeights[context] * probability;
+		}
+
+		return probability;
+	}
+
+	/**
+	 * Get the Katz backoff probability of a token given the tokens before it. The n-grams ending with the token and their contexts are found in
+	 * one walk back from it, from the lowest order up
+	 *
+	 * @param tokens
+	 *            Ids of tokens, -1 for a word that has not been seen
+	 * @param end
+	 *            Index of the token
+	 * @param length
+	 *            Highest order of n-grams to use
+	 * @return Conditional probability, 0 if the token has not been seen
+	 */
+	public double getKatz(final int[] tokens, final int end, final int length) {
+		this.refresh();
+		double probability = 0;
+		int node = ROOT;
+		int context = ROOT;
+		for (int depth = 1; depth <= length && end - depth >= -1 && tokens[end - depth + 1] >= 0; depth++) {
+			final int token = tokens[end - depth + 1];
+			if (depth > 1) {
+				context = this.children.get(key(context, token));
+				if (context == ROOT) {
+					break;
+				}
+			}
+
+			// Use the n-gram if it has been seen, otherwise back off to the probability of the order below
+			node = node == ROOT && depth > 1 ? ROOT : this.children.get(key(node, token));
+			if (node != ROOT) {
+				probability = this.katzProbs[node];
+			} else if (depth > 1) {
+				probability *= this.katzWeights[context];
+			}
+		}
+
+		return probability;
+	}
+
+	/**
+	 * Get the number of n-grams of an order that occur each number of times
+	 *
+	 * @param n
+	 *            Order of n-grams
+	 * @return Map from a number of occurrences to the number of n-grams that occur that many times
+	 */
+	public Map<Integer, Integer> getFrequencyMap(final int n) {
+		return this.frequencyMaps.get(n - 1);
+	}
+
+	/**
+	 * Get the number of occurrences of all n-grams of an order
+	 *
+	 * @param n
+	 *            Order of n-grams
+	 * @return Total count
+	 */
+	public long getTotal(final int n) {
+		return this.totals[n - 1];
+	}
+
+	/**
+	 * Add the counts of another trie to this one
+	 *
+	 * @param other
+	 *            Trie to add
+	 * @param ids
+	 *            Id in this trie of each word id in the other
+	 */
+	public void merge(final NGramTrie other, final int[] ids) {
+		// Parents are always added before their children, so the parent of each node has been mapped before it
+		final int[] nodes = new int[other.size];
+		nodes[ROOT] = ROOT;
+		for (int node = 1; node < other.size; node++) {
+			nodes[node] = this.getOrAddChild(nodes[other.parents[node]], ids[other.words[node]]);
+			this.counts[nodes[node]] += other.counts[node];
+		}
+	}
+
+	/**
+	 * Count the n-grams of each order by their number of occurrences, and precompute the tables of each type of smoothing, once all the n-grams
+	 * have been counted
+	 */
+	public void computeTables() {
+		final List<Map<Integer, Integer>> frequencyMaps = new ArrayList<>();
+		final List<Map<Integer, Integer>> continuationMaps = new ArrayList<>();
+		for (int n = 0; n < this.order; n++) {
+			frequencyMaps.add(new HashMap<>());
+			continuationMaps.add(new HashMap<>());
+		}
+
+		// Find the order of each n-gram, and the n-gram of the words before its last word, which is reached from the context of its parent
+		final long[] totals = new long[this.order];
+		final int[] depths = new int[this.size];
+		final int[] contexts = new int[this.size];
+		final int[] continuations = new int[this.size];
+		int vocabularySize = 0;
+		for (int node = 1; node < this.size; node++) {
+			depths[node] = depths[this.parents[node]] + 1;
+			contexts[node] = depths[node] == 1 ? ROOT : this.children.get(key(contexts[this.parents[node]], this.words[node]));
+			continuations[this.parents[node]]++;
+			totals[depths[node] - 1] += this.counts[node];
+			frequencyMaps.get(depths[node] - 1).merge(this.counts[node], 1, Integer::sum);
+			if (depths[node] == 1) {
+				vocabularySize++;
+			}
+		}
+
+		// Kneser-Ney uses counts for the highest order, and the number of distinct words preceding an n-gram for lower orders
+		final int[] used = new int[this.size];
+		for (int node = 1; node < this.size; node++) {
+			used[node] = depths[node] == this.order ? this.counts[node] : continuations[node];
+			continuationMaps.get(depths[node] - 1).merge(used[node], 1, Integer::sum);
+		}
+
+		final List<double[]> goodTuring = new ArrayList<>();
+		final List<double[]> kneserNeyDiscounts = new ArrayList<>();
+		final List<double[]> katzRatios = new ArrayList<>();
+		for (int n = 0; n < this.order; n++) {
+			goodTuring.add(Discounts.goodTuring(frequencyMaps.get(n)));
+			kneserNeyDiscounts.add(Discounts.kneserNey(continuationMaps.get(n)));
+			katzRatios.add(Discounts.katz(frequencyMaps.get(n)));
+		}
+
+		// Sum the counts following each context
+		final long[] kneserNeyTotals = new long[this.size];
+		final long[] katzTotals = new long[this.size];
+		for (int node = 1; node < this.size; node++) {
+			kneserNeyTotals[contexts[node]] += used[node];
+			katzTotals[contexts[node]] += this.counts[node];
+		}
+
+		// Discount each n-gram, leaving the mass taken from the n-grams following a context to the order below
+		final double[] kneserNeyMasses = new double[this.size];
+		final double[] kneserNeyWeights = new double[this.size];
+		final double[] katzProbs = new double[this.size];
+		final double[] katzWeights = new double[this.size];
+		final double[] katzLower = new double[this.size];
+		for (int node = 1; node < this.size; node++) {
+			final int context = contexts[node];
+			// The n-grams following a context may all have no word before them, as at the start of the corpus, and then have no mass
+			if (kneserNeyTotals[context] > 0) {
+				final double discount = kneserNeyDiscounts.get(depths[node] - 1)[Math.min(used[node], 3)];
+				kneserNeyMasses[node] = Math.max(used[node] - discount, 0) / kneserNeyTotals[context];
+				kneserNeyWeights[context] += discount / kneserNeyTotals[context];
+			}
+
+			// Katz does not discount unigrams, and backs off from an n-gram to its parent, which drops its first word
+			final double ratio = depths[node] == 1 || this.counts[node] > Discounts.KATZ_LIMIT ? 1 : katzRatios.get(depths[node] - 1)[this.counts[node]];
+			katzProbs[node] = ratio * this.counts[node] / katzTotals[context];
+			if (depths[node] > 1) {
+				katzWeights[context] += katzProbs[node];
+				katzLower[context] += katzProbs[this.parents[node]];
+			}
+		}
+
+		// A context that nothing follows, or nothing with a word before it, leaves all of the mass to the order below
+		for (int node = 1; node < this.size; node++) {
+			if (kneserNeyTotals[node] == 0) {
+				kneserNeyWeights[node] = 1;
+			}
+
+			katzWeights[node] = katzLower[node] < 1 ? (1 - katzWeights[node]) / (1 - katzLower[node]) : 0;
+		}
+
+		// Publish the tables only once they are complete, so that a lookup never sees them half computed
+		this.frequencyMaps = frequencyMaps;
+		this.totals = totals;
+		this.vocabularySize = vocabularySize;
+		this.goodTuring = goodTuring;
+		this.kneserNeyMasses = kneserNeyMasses;
+		this.kneserNeyWeights = kneserNeyWeights;
+		this.katzProbs = katzProbs;
+		this.katzWeights = katzWeights;
+	}
+
+	/**
+	 * Patch the tables after the count of an n-gram has gone up by one, in constant time
+	 *
+	 * @param n
+	 *            Order of the n-gram
+	 * @param count
+	 *            New count of the n-gram
+	 */
+	private void update(final int n, final int count) {
+		this.totals[n - 1]++;
+		this.goodTuring.set(n - 1, Discounts.update(this.frequencyMaps.get(n - 1), this.goodTuring.get(n - 1), count));
+		this.stale = true;
+	}
+
+	/**
+	 * Compute the tables again if n-grams have been added since they were last computed. Lookups do this themselves, but calling it once
+	 * n-grams stop being added keeps it off the threads that look up
+	 */
+	public void refresh() {
+		if (this.stale) {
+			synchronized (this) {
+				if (this.stale) {
+					this.computeTables();
+					this.stale = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a child of a node, adding it if it is not in the trie
+	 *
+	 * @param parent
+	 *            Parent node
+	 * @param word
+	 *            Id of the word of the child
+	 * @return Child node
+	 */
+	private int getOrAddChild(final int parent, final int word) {
+		final long key = key(parent, word);
+		final int child = this.children.get(key);
+		if (child != ROOT) {
+			return child;
+		}
+
+		if (this.size == this.counts.length) {
+			this.parents = Arrays.copyOf(this.parents, this.size * 2);
+			this.words = Arrays.copyOf(this.words, this.size * 2);
+			this.counts = Arrays.copyOf(this.counts, this.size * 2);
+		}
+
+		this.parents[this.size] = parent;
+		this.words[this.size] = word;
+		this.children.add(key, this.size);
+		return this.size++;
+	}
+
+	/**
+	 * Pack a node and the id of a word into the key of its child
+	 *
+	 * @param node
+	 *            Parent node
+	 * @param word
+	 *            Id of the word
+	 * @return Key of the child
+	 */
+	private static long key(final int node, final int word) {
+		return (long) node << 32 | word;
+	}
+}
\ No newline at end of file
@@ -2,7 +2,15 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.StringTokenizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class to parse the corpus file
@@ -10,7 +18,62 @@ import java.util.StringTokenizer;
  * @author Ekal.Golas
  */
 public class Parser {
+	private static final int		CHUNK_CHARACTERS	= 1 << 22;
+
 	private final BufferedReader	reader;
+	private final int				threads;
+	private final int				order;
+	private final long				sketchBytes;
+
+	/**
+	 * Counts of a chunk of the corpus, with the ids of its first and last tokens so that n-grams spanning chunks can be counted
+	 */
+	private static class Chunk {
+		private final ParserData	parserData;
+		private final Tokenizer		tokenizer;
+		private final int[]			head;
+		private final int[]			history;
+		private int					headSize;
+
+		/**
+		 * Constructor
+		 *
+		 * @param order
+		 *            Highest order of n-grams to count
+		 */
+		private Chunk(final int order) {
+			this(new ParserData(order), order);
+		}
+
+		/**
+		 * Constructor that counts into given parser data
+		 *
+		 * @param parserData
+		 *            Parser data to count into
+		 * @param order
+		 *            Highest order of n-grams to count
+		 */
+		private Chunk(final ParserData parserData, final int order) {
+			this.parserData = parserData;
+			this.tokenizer = new Tokenizer();
+			this.head = new int[order - 1];
+			this.history = new int[order];
+			Arrays.fill(this.history, -1);
+		}
+
+		/**
+		 * Constructor for appending to counted data, carrying on from the last tokens counted
+		 *
+		 * @param parserData
+		 *            Counted data, with the ids of its last tokens
+		 */
+		private Chunk(final ParserData parserData) {
+			this.parserData = parserData;
+			this.tokenizer = new Tokenizer();
+			this.head = new int[0];
+			this.history = parserData.history;
+		}
+	}
 
 	/**
 	 * Constructor that takes in a file path to initialize the parser
@@ -20,22 +83,90 @@ public class Parser {
 	 * @throws FileNotFoundException
 	 */
 	public Parser(final String file) throws FileNotFoundException {
+		this(file, 1);
+	}
+
+	/**
+	 * Constructor that takes in a file path and the number of threads to count the corpus on
+	 *
+	 * @param file
+	 *            File path
+	 * @param threads
+	 *            Number of threads, 1 to count on the calling thread
+	 * @throws FileNotFoundException
+	 */
+	public Parser(final String file, final int threads) throws FileNotFoundException {
+		this(file, threads, 2);
+	}
+
+	/**
+	 * Constructor that takes in a file path, the number of threads to count the corpus on and the highest order of n-grams to count
+	 *
+	 * @param file
+	 *            File path
+	 * @param threads
+	 *            Number of threads, 1 to count on the calling thread
+	 * @param order
+	 *            Highest order of n-grams, from 2 to count bigrams only up to 5
+	 * @throws FileNotFoundException
+	 */
+	public Parser(final String file, final int threads, final int order) throws FileNotFoundException {
+		this(file, threads, order, 0);
+	}
+
+	/**
+	 * Constructor that takes in a file path, the number of threads to count the corpus on, the highest order of n-grams to count and the memory
+	 * to count bigrams approximately in
+	 *
+	 * @param file
+	 *            File path
+	 * @param threads
+	 *            Number of threads, 1 to count on the calling thread
+	 * @param order
+	 *            Highest order of n-grams, from 2 to count bigrams only up to 5
+	 * @param sketchBytes
+	 *            Memory for a {@link CountMinSketch} of the bigrams, counted on the calling thread with order 2 only, or 0 to count them exactly
+	 * @throws FileNotFoundException
+	 */
+	public Parser(final String file, final int threads, final int order, final long sketchBytes) throws FileNotFoundException {
+		if (order < 2 || order > 5) {
+			throw new IllegalArgumentException("Order of n-grams must be from 2 to 5: " + order);
+		}
+		if (sketchBytes > 0 && order > 2) {
+			throw new IllegalArgumentException("Bigrams counted in a sketch cannot be used with n-grams of order " + order);
+		}
+
 		this.reader = new BufferedReader(new FileReader(file));
+		this.threads = threads;
+		this.order = order;
+		this.sketchBytes = sketchBytes;
 	}
 
 	/**
-	 * Parses and tokenizes the input read by the reader of Parser
+	 * Parses and tokenizes the input read by the reader of Parser. The input is streamed line by line, so memory is bounded by the counts rather
+	 * than by the size of the corpus
 	 *
 	 * @return parsed data as object of {@link ParserData}
 	 * @throws IOException
 	 */
 	public ParserData parse() throws IOException {
-		// Read input and transform it
-		final ParserData parserData = new ParserData();
-		final String corpus = this.readInput();
+		// Read input line by line, transform it and tokenize it, carrying the last tokens over so that n-grams span line breaks
+		final ParserData parserData;
+		try {
+			if (this.threads > 1 && this.sketchBytes == 0) {
+				parserData = this.countChunks();
+			} else {
+				final Chunk chunk = new Chunk(this.sketchBytes > 0 ? new SketchParserData(this.sketchBytes) : new ParserData(this.order), this.order);
+				for (String line; (line = this.reader.readLine()) != null;) {
+					tokenize(chunk, line);
+				}
 
-		// Tokenize the input
-		this.tokenize(parserData, corpus);
+				parserData = chunk.parserData;
+				parserData.history = chunk.history;
+			}
+		} finally {
+			this.reader.close();
+		}
 
 		// Map each bigram to it`s number of occurrences
 		this.countBigrams(parserData);
@@ -45,84 +176,203 @@ public class Parser {
 	}
 
 	/**
-	 * Tokenizes the input mapping bigrams and unigrams
+	 * Splits the input into chunks of whole lines, counts each chunk into its own parser data on a pool of threads, and merges the counts in
+	 * input order. The n-grams that span the boundary between two chunks are added while merging, so the counts are the same as counting on one
+	 * thread
 	 *
-	 * @param parserData
-	 *            Object of {@link ParserData}
-	 * @param corpus
-	 *            Input data
+	 * @return parsed data as object of {@link ParserData}
+	 * @throws IOException
 	 */
-	private void tokenize(final ParserData parserData, final String corpus) {
-		// Get the first token
-		final StringTokenizer tokenizer = new StringTokenizer(corpus);
-		String token1 = "";
-		if (tokenizer.hasMoreTokens()) {
-			token1 = tokenizer.nextToken();
-
-			// Add this token to unigram map
-			if (parserData.unigramMap.putIfAbsent(token1, 1) != null) {
-				parserData.unigramMap.put(token1, parserData.unigramMap.get(token1) + 1);
+	private ParserData countChunks() throws IOException {
+		final ParserData parserData = new ParserData(this.order);
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		final Queue<Future<Chunk>> pending = new ArrayDeque<>();
+		final int[] history = new int[this.order];
+		Arrays.fill(history, -1);
+		try {
+			// Submit chunks of lines, merging the oldest one once too many are pending, so that memory stays bounded
+			List<String> lines = new ArrayList<>();
+			int characters = 0;
+			for (String line; (line = this.reader.readLine()) != null;) {
+				lines.add(line);
+				characters += line.length();
+				if (characters >= CHUNK_CHARACTERS) {
+					pending.add(this.submit(executor, lines));
+					lines = new ArrayList<>();
+					characters = 0;
+					if (pending.size() >= 2 * this.threads) {
+						this.merge(parserData, pending, history);
+					}
+				}
+			}
+
+			// Submit the rest of the lines, and merge the rest of the chunks
+			pending.add(this.submit(executor, lines));
+			while (!pending.isEmpty()) {
+				this.merge(parserData, pending, history);
 			}
+		} finally {
+			executor.shutdownNow();
 		}
 
-		// Go through all the tokens in the corpus
-		while (tokenizer.hasMoreTokens()) {
-			final String token2 = tokenizer.nextToken();
-			final String word = token1 + " " + token2;
+		parserData.history = history;
+		return parserData;
+	}
 
-			// Add to bigram map
-			if (parserData.bigramMap.putIfAbsent(word, 1) != null) {
-				parserData.bigramMap.put(word, parserData.bigramMap.get(word) + 1);
+	/**
+	 * Submits a chunk of lines to be counted
+	 *
+	 * @param executor
+	 *            Pool of threads to count on
+	 * @param lines
+	 *            Lines of the chunk
+	 * @return Counts of the chunk, once they are done
+	 */
+	private Future<Chunk> submit(final ExecutorService executor, final List<String> lines) {
+		return executor.submit(() -> {
+			final Chunk chunk = new Chunk(this.order);
+			for (final String line : lines) {
+				tokenize(chunk, line);
 			}
 
-			// Count total words
+			return chunk;
+		});
+	}
+
+	/**
+	 * Waits for the oldest pending chunk and merges its counts
+	 *
+	 * @param parserData
+	 *            Object of {@link ParserData} to merge the counts into
+	 * @param pending
+	 *            Chunks in input order
+	 * @param history
+	 *            Ids of the last tokens before the chunk, oldest first and -1 where there were fewer, updated to the last tokens after it
+	 * @throws IOException
+	 */
+	private void merge(final ParserData parserData, final Queue<Future<Chunk>> pending, final int[] history) throws IOException {
+		final Chunk chunk;
+		try {
+			chunk = pending.poll().get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while counting", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to count: " + e.getCause().getMessage(), e.getCause());
+		}
+
+		final int[] ids = parserData.merge(chunk.parserData);
+
+		// Line up the last tokens before the chunk with the first tokens of it
+		final int context = this.order - 1;
+		final int[] tokens = new int[2 * context];
+		System.arraycopy(history, 1, tokens, 0, context);
+		for (int i = 0; i < context; i++) {
+			tokens[context + i] = i < chunk.headSize ? ids[chunk.head[i]] : -1;
+		}
+
+		// Count the bigram that spans the boundary
+		if (tokens[context - 1] >= 0 && tokens[context] >= 0) {
+			parserData.addBigram(tokens[context - 1], tokens[context]);
 			parserData.totalWords++;
+		}
 
-			// Add this token to unigram map
-			if (parserData.unigramMap.putIfAbsent(token2, 1) != null) {
-				parserData.unigramMap.put(token2, parserData.unigramMap.get(token2) + 1);
+		// Count the n-grams ending with each of the first tokens of the chunk that start before it
+		for (int i = 0; parserData.ngrams != null && i < context && tokens[context + i] >= 0; i++) {
+			parserData.ngrams.add(tokens, context + i, this.order, i + 1);
+		}
+
+		// Carry the last tokens of the chunk over to the next one
+		for (final int id : chunk.history) {
+			if (id >= 0) {
+				System.arraycopy(history, 1, history, 0, context);
+				history[context] = ids[id];
 			}
+		}
+	}
 
-			// The second token becomes the first token for the next bigram
-			token1 = token2;
+	/**
+	 * Appends text to counted data, updating the counts and the tables in time proportional to the new tokens rather than counting the corpus
+	 * again. The n-grams spanning the end of the counted text and the start of the new text are counted, as if the text were a line following
+	 * the corpus
+	 *
+	 * @param parserData
+	 *            Data counted by {@link #parse()}
+	 * @param text
+	 *            Line of input to append
+	 */
+	public static void update(final ParserData parserData, final String text) {
+		if (parserData.history == null) {
+			throw new IllegalStateException("Only data counted from a corpus can be appended to");
 		}
+
+		tokenize(new Chunk(parserData), text);
 	}
 
 	/**
-	 * Reads input from reader and transforms it for tokenizing
+	 * Tokenizes the input mapping n-grams
 	 *
-	 * @return String of lines containing transformed input
-	 * @throws IOException
+	 * @param chunk
+	 *            Chunk of the corpus the input belongs to, with the ids of the tokens before it
+	 * @param text
+	 *            Line of input
 	 */
-	private String readInput() throws IOException {
-		final StringBuilder lines = new StringBuilder();
+	private static void tokenize(final Chunk chunk, final String text) {
+		final ParserData parserData = chunk.parserData;
+		final int[] history = chunk.history;
+		final int last = history.length - 1;
+		final Tokenizer tokenizer = chunk.tokenizer;
+		final int count = tokenizer.tokenize(text);
 
-		// Read input and join all lines
-		String line = this.reader.readLine();
-		while (line != null) {
-			lines.append(line);
-			line = this.reader.readLine();
-		}
+		// Go through all the tokens in the text
+		for (int i = 0; i < count; i++) {
+			// Add this token to unigram counts, and remember it if it is one of the first tokens of the chunk
+			final int token = parserData.addUnigram(tokenizer.getChars(), tokenizer.getStart(i), tokenizer.getLength(i));
+			if (chunk.headSize < chunk.head.length) {
+				chunk.head[chunk.headSize++] = token;
+			}
+
+			// Shift this token into the history
+			System.arraycopy(history, 1, history, 0, last);
+			history[last] = token;
+
+			// Add to bigram counts if there is a token before this one, and count total words
+			if (history[last - 1] >= 0) {
+				parserData.addBigram(history[last - 1], token);
+				parserData.totalWords++;
+			}
 
-		// Remove special characters, trim white spaces and convert to lower case
-		String corpus = lines.toString().replaceAll("[^a-zA-Z0-9. ]", "");
-		corpus = corpus.replaceAll("\\s+", " ").toLowerCase();
-		return corpus;
+			// Add to the counts of n-grams of higher orders ending with this token
+			if (parserData.ngrams != null) {
+				parserData.ngrams.add(history, last, history.length, 0);
+			}
+		}
 	}
 
 	/**
-	 * Counts the occurrences of each bigram
+	 * Counts the occurrences of each bigram, and precomputes the tables from the counts
 	 *
 	 * @param parserData
 	 *            Parser data object contains bigram map
 	 */
 	private void countBigrams(final ParserData parserData) {
-		for (final String key : parserData.bigramMap.keySet()) {
-			final int val = parserData.bigramMap.get(key);
+		// A sketch keeps its frequency map as it counts, and cannot list its bigrams for the tables that need them
+		if (this.sketchBytes > 0) {
+			parserData.tables = new BigramTables(parserData, false);
+			return;
+		}
+
+		parserData.bigramMap.forEach((key, val) -> {
 			if (parserData.frequencyMap.putIfAbsent(val, 1) != null) {
 				final int count = parserData.frequencyMap.get(val);
 				parserData.frequencyMap.put(val, count + 1);
 			}
+		});
+
+		// Precompute the Good-Turing counts, the other tables waiting for their first lookup, and the tables of the n-grams of higher orders
+		parserData.tables = new BigramTables(parserData);
+		if (parserData.ngrams != null) {
+			parserData.ngrams.computeTables();
 		}
 	}
 }
\ No newline at end of file
@@ -1,23 +1,226 @@
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Class to represent the data parsed by the parser
+ * Class to represent the data parsed by the parser. Words are interned to ids, and each bigram is keyed by the ids of its words packed into a
+ * long, so that counting does not build strings or box counts. N-grams of higher orders are counted in a trie, if one is wanted
  *
  * @author Ekal.Golas
  */
 public class ParserData {
 	public Map<Integer, Integer>	frequencyMap;
-	public Map<String, Integer>		bigramMap;
-	public Map<String, Integer>		unigramMap;
+	public LongIntMap				bigramMap;
+	public Vocabulary				vocabulary;
+	public int[]					unigramCounts;
 	public int						totalWords;
+	public NGramTrie				ngrams;
+	public BigramTables				tables;
+	public int[]					history;
 
 	/**
 	 * Default constructor
 	 */
 	public ParserData() {
-		this.bigramMap = new HashMap<>();
-		this.unigramMap = new HashMap<>();
+		this(2);
+	}
+
+	/**
+	 * Constructor that takes in the highest order of n-grams to count
+	 *
+	 * @param order
+	 *            Highest order of n-grams, with n-grams of orders above 2 counted in a trie
+	 */
+	public ParserData(final int order) {
+		if (order > 2) {
+			this.ngrams = new NGramTrie(order);
+		}
+
+		this.bigramMap = new LongIntMap();
+		this.vocabulary = new Vocabulary();
+		this.unigramCounts = new int[1024];
 		this.frequencyMap = new HashMap<>();
 	}
+
+	/**
+	 * Constructor for counts that are held elsewhere than in the maps of this class, by a subclass that looks them up
+	 *
+	 * @param frequencyMap
+	 *            Number of bigrams that occur each number of times
+	 * @param totalWords
+	 *            Number of occurrences of all bigrams
+	 */
+	protected ParserData(final Map<Integer, Integer> frequencyMap, final int totalWords) {
+		this.frequencyMap = frequencyMap;
+		this.totalWords = totalWords;
+	}
+
+	/**
+	 * Pack the ids of the words of a bigram into a key
+	 *
+	 * @param id1
+	 *            Id of the first word
+	 * @param id2
+	 *            Id of the second word
+	 * @return Key of the bigram
+	 */
+	public static long key(final int id1, final int id2) {
+		return (long) id1 << 32 | id2;
+	}
+
+	/**
+	 * Count an occurrence of a word
+	 *
+	 * @param word
+	 *            Word
+	 * @return Id of the word
+	 */
+	public int addUnigram(final String word) {
+		final int id = this.vocabulary.intern(word);
+		this.ensureCapacity(id);
+		this.unigramCounts[id]++;
+		return id;
+	}
+
+	/**
+	 * Count an occurrence of a word held in a span of characters, without making a string of it unless it has not been seen
+	 *
+	 * @param chars
+	 *            Characters holding the word
+	 * @param offset
+	 *            Index of the first character of the word
+	 * @param length
+	 *            Number of characters of the word
+	 * @return Id of the word
+	 */
+	public int addUnigram(final char[] chars, final int offset, final int length) {
+		final int id = this.vocabulary.intern(chars, offset, length);
+		this.ensureCapacity(id);
+		this.unigramCounts[id]++;
+		return id;
+	}
+
+	/**
+	 * Count an occurrence of a bigram, patching the frequency map and the tables if they have been built
+	 *
+	 * @param id1
+	 *            Id of the first word
+	 * @param id2
+	 *            Id of the second word
+	 */
+	public void addBigram(final int id1, final int id2) {
+		final int count = this.bigramMap.add(key(id1, id2), 1);
+		if (this.tables != null) {
+			this.tables.update(count);
+		}
+	}
+
+	/**
+	 * Add the counts of another parser data to this one. Bigrams that span the boundary between the two are not known to either, and have to be
+	 * added by the caller
+	 *
+	 * @param other
+	 *            Parser data to add, with its own ids
+	 * @return Id in this parser data of each id in the other
+	 */
+	public int[] merge(final ParserData other) {
+		// Intern the words of the other into this vocabulary, adding their counts
+		final int[] ids = new int[other.vocabulary.size()];
+		for (int id = 0; id < ids.length; id++) {
+			ids[id] = this.vocabulary.intern(other.vocabulary.getWord(id));
+			this.ensureCapacity(ids[id]);
+			this.unigramCounts[ids[id]] += other.unigramCounts[id];
+		}
+
+		// Re-key the bigrams of the other with ids of this vocabulary
+		other.bigramMap.forEach((key, val) -> this.bigramMap.add(key(ids[(int) (key >>> 32)], ids[(int) key]), val));
+		this.totalWords += other.totalWords;
+		if (this.ngrams != null) {
+			this.ngrams.merge(other.ngrams, ids);
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Get the id of a word
+	 *
+	 * @param word
+	 *            Word to look up
+	 * @return Id of the word, -1 if it has not been seen
+	 */
+	public int getId(final String word) {
+		return this.vocabulary.getId(word);
+	}
+
+	/**
+	 * Get the word for an id
+	 *
+	 * @param id
+	 *            Id of the word
+	 * @return Word
+	 */
+	public String getWord(final int id) {
+		return this.vocabulary.getWord(id);
+	}
+
+	/**
+	 * @return the number of distinct words
+	 */
+	public int getVocabularySize() {
+		return this.vocabulary.size();
+	}
+
+	/**
+	 * @return the number of distinct bigrams
+	 */
+	public int getBigramSize() {
+		return this.bigramMap.size();
+	}
+
+	/**
+	 * Call back for each bigram with its count
+	 *
+	 * @param entry
+	 *            Callback, with the key of the bigram as packed by {@link #key(int, int)}
+	 */
+	public void forEachBigram(final LongIntMap.Entry entry) {
+		this.bigramMap.forEach(entry);
+	}
+
+	/**
+	 * Get number of occurrences of a word
+	 *
+	 * @param id
+	 *            Id of the word, -1 for a word that has not been seen
+	 * @return Count of the word
+	 */
+	public int getUnigramCount(final int id) {
+		return id < 0 ? 0 : this.unigramCounts[id];
+	}
+
+	/**
+	 * Get number of occurrences of a bigram
+	 *
+	 * @param id1
+	 *            Id of the first word, -1 for a word that has not been seen
+	 * @param id2
+	 *            Id of the second word, -1 for a word that has not been seen
+	 * @return Count of the bigram
+	 */
+	public int getBigramCount(final int id1, final int id2) {
+		return id1 < 0 || id2 < 0 ? 0 : this.bigramMap.get(key(id1, id2));
+	}
+
+	/**
+	 * Grow the unigram counts so that they have room for an id
+	 *
+	 * @param id
+	 *            Id of a word
+	 */
+	private void ensureCapacity(final int id) {
+		if (id >= this.unigramCounts.length) {
+			this.unigramCounts = Arrays.copyOf(this.unigramCounts, Math.max(this.unigramCounts.length * 2, id + 1));
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+import java.util.HashMap;
+
+/**
+ * Parser data that counts bigrams approximately in a {@link CountMinSketch} of a fixed size, rather than in a map that grows with the number of
+ * distinct bigrams. Words and their counts are kept exactly. The frequency map is kept from the estimated counts as they go up, so
+ * Good-Turing is approximate too, while smoothing that needs the bigrams following each word is not available, as a sketch cannot list them
+ *
+ * @author Ekal.Golas
+ */
+public class SketchParserData extends ParserData {
+	private final CountMinSketch sketch;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes
+	 *            Memory for the sketch of the bigrams
+	 */
+	public SketchParserData(final long bytes) {
+		super(new HashMap<>(), 0);
+		this.vocabulary = new Vocabulary();
+		this.unigramCounts = new int[1024];
+		this.sketch = new CountMinSketch(bytes);
+	}
+
+	/**
+	 * @return the sketch the bigrams are counted in
+	 */
+	public final CountMinSketch getSketch() {
+		return this.sketch;
+	}
+
+	@Override
+	public void addBigram(final int id1, final int id2) {
+		final int count = this.sketch.add(key(id1, id2));
+		if (this.tables != null) {
+			this.tables.update(count);
+		} else {
+			Discounts.count(this.frequencyMap, count);
+		}
+	}
+
+	@Override
+	public int[] merge(final ParserData other) {
+		throw new IllegalStateException("Sketches of bigrams are counted on one thread");
+	}
+
+	/**
+	 * Get the estimated number of distinct bigrams, the number of bigrams in the frequency map
+	 */
+	@Override
+	public int getBigramSize() {
+		int size = 0;
+		for (final int count : this.frequencyMap.values()) {
+			size += count;
+		}
+
+		return size;
+	}
+
+	@Override
+	public void forEachBigram(final LongIntMap.Entry entry) {
+		throw new IllegalStateException("Bigrams counted in a sketch cannot be listed");
+	}
+
+	/**
+	 * Get the estimated count of a bigram. A sketch only overestimates, so the estimate is capped at the count of either word, which no
+	 * bigram of them can exceed, to keep the probabilities smoothed from it within their range
+	 */
+	@Override
+	public int getBigramCount(final int id1, final int id2) {
+		if (id1 < 0 || id2 < 0) {
+			return 0;
+		}
+
+		return Math.min(this.sketch.get(key(id1, id2)), Math.min(this.getUnigramCount(id1), this.getUnigramCount(id2)));
+	}
+}
\ No newline at end of file
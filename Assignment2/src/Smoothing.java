@@ -1,5 +1,6 @@
 import java.text.DecimalFormat;
 import java.util.StringTokenizer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Class that provides various methods of smoothing for the models implemented
@@ -20,7 +21,19 @@ public class Smoothing {
 	}
 
 	/**
-	 * Apply desired smoothing and get sentence probability
+	 * Check if a type of smoothing can be applied to the data. Kneser-Ney and Katz backoff need the bigrams following each word, which are not
+	 * kept when bigrams are counted in a sketch
+	 *
+	 * @param smoothingType
+	 *            Type of smoothing
+	 * @return True if sentence probabilities can be computed with the type of smoothing
+	 */
+	public boolean isSupported(final Models smoothingType) {
+		return this.parserData.tables.hasContexts() || smoothingType != Models.KNESER_NEY && smoothingType != Models.KATZ_BACKOFF;
+	}
+
+	/**
+	 * Apply desired smoothing and get sentence probability. Words with zero probability are skipped
 	 *
 	 * @param sentence
 	 *            Sentence to compute
@@ -29,30 +42,106 @@ public class Smoothing {
 	 * @return Probability as a decimal
 	 */
 	public double doSmoothing(final String sentence, final Models smoothingType) {
-		// Initialize variables
-		String token1 = "";
-		double sentenceProb = 1.0;
+		final double[] sentenceProb = { 1.0 };
+		this.computeProbabilities(sentence, smoothingType, conditionalProb -> {
+			if (conditionalProb > 0) {
+				sentenceProb[0] *= conditionalProb;
+			}
+		});
+
+		return sentenceProb[0];
+	}
+
+	/**
+	 * Apply desired smoothing and get sentence probability in log space, so that long sentences do not underflow. Words with zero probability
+	 * are not skipped
+	 *
+	 * @param sentence
+	 *            Sentence to compute
+	 * @param smoothingType
+	 *            Type of smoothing
+	 * @return Natural log of the probability, negative infinity if a word has zero probability
+	 */
+	public double getLogProbability(final String sentence, final Models smoothingType) {
+		final double[] logProb = { 0 };
+		this.computeProbabilities(sentence, smoothingType, conditionalProb -> logProb[0] += Math.log(conditionalProb));
+
+		return logProb[0];
+	}
+
+	/**
+	 * Compute the conditional probability of each word of a sentence after the first
+	 *
+	 * @param sentence
+	 *            Sentence to compute
+	 * @param smoothingType
+	 *            Type of smoothing
+	 * @param consumer
+	 *            Consumer of each conditional probability
+	 */
+	private void computeProbabilities(final String sentence, final Models smoothingType, final DoubleConsumer consumer) {
+		// Use the highest order of n-grams counted
+		if (this.parserData.ngrams != null) {
+			this.computeNGramProbabilities(sentence, smoothingType, consumer);
+			return;
+		}
 
 		// Get the first token
+		int token1 = -1;
 		final StringTokenizer tokenizer = new StringTokenizer(sentence);
 		if (tokenizer.hasMoreTokens()) {
-			token1 = tokenizer.nextToken();
+			token1 = this.parserData.getId(tokenizer.nextToken());
 		}
 
 		// Go through all the rest of tokens
 		while (tokenizer.hasMoreTokens()) {
-			final String token2 = tokenizer.nextToken();
-			final String bigramToken = token1 + " " + token2;
-			final double conditionalProb = this.getConditionalProbability(smoothingType, token1, bigramToken);
-			if (conditionalProb > 0) {
-				sentenceProb *= conditionalProb;
-			}
+			final int token2 = this.parserData.getId(tokenizer.nextToken());
+			consumer.accept(this.getConditionalProbability(smoothingType, token1, token1, token2));
 
 			// Set the second token as the first token for the next bigram
 			token1 = token2;
 		}
+	}
 
-		return sentenceProb;
+	/**
+	 * Compute the conditional probability of each word of a sentence after the first with n-grams of the highest order counted, or lower orders
+	 * at the start of the sentence
+	 *
+	 * @param sentence
+	 *            Sentence to compute
+	 * @param smoothingType
+	 *            Type of smoothing
+	 * @param consumer
+	 *            Consumer of each conditional probability
+	 */
+	private void computeNGramProbabilities(final String sentence, final Models smoothingType, final DoubleConsumer consumer) {
+		// Get the ids of the tokens
+		final StringTokenizer tokenizer = new StringTokenizer(sentence);
+		final int[] tokens = new int[tokenizer.countTokens()];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = this.parserData.getId(tokenizer.nextToken());
+		}
+
+		// For each token after the first, look up its probability given the tokens before it
+		final NGramTrie ngrams = this.parserData.ngrams;
+		final int[] counts = new int[ngrams.getOrder()];
+		final int[] contextCounts = new int[ngrams.getOrder()];
+		for (int i = 1; i < tokens.length; i++) {
+			final int n = Math.min(ngrams.getOrder(), i + 1);
+			if (smoothingType == Models.KNESER_NEY) {
+				consumer.accept(ngrams.getKneserNey(tokens, i, n));
+			} else if (smoothingType == Models.KATZ_BACKOFF) {
+				consumer.accept(ngrams.getKatz(tokens, i, n));
+			} else if (smoothingType == Models.GOOD_TURING) {
+				ngrams.getCounts(tokens, i, n, counts);
+				consumer.accept(ngrams.getGoodTuring(n, counts[n - 1]));
+			} else {
+				// Look up the counts of the n-grams ending with the token and with the token before it
+				ngrams.getCounts(tokens, i, n, counts);
+				ngrams.getCounts(tokens, i - 1, n - 1, contextCounts);
+				consumer.accept(this.getConditionalProbability(smoothingType, counts[n - 1], contextCounts[n - 2]));
+			}
+		}
 	}
 
 	/**
@@ -61,32 +150,49 @@ public class Smoothing {
 	 * @param smoothingType
 	 *            Type of smoothing to apply
 	 * @param unigramToken
-	 *            Single word token
-	 * @param bigramToken
-	 *            double word token
+	 *            Id of the single word token, -1 if it has not been seen
+	 * @param token1
+	 *            Id of the first word of the double word token, -1 if it has not been seen
+	 * @param token2
+	 *            Id of the second word of the double word token, -1 if it has not been seen
+	 * @return Conditional probability as decimal
+	 */
+	private double getConditionalProbability(final Models smoothingType, final int unigramToken, final int token1, final int token2) {
+		// Smoothing that needs more than the counts is looked up in the tables precomputed from all the counts
+		final BigramTables tables = this.parserData.tables;
+		if (smoothingType == Models.KNESER_NEY) {
+			return tables.getKneserNey(token1, token2);
+		} else if (smoothingType == Models.KATZ_BACKOFF) {
+			return tables.getKatz(token1, token2);
+		} else if (smoothingType == Models.GOOD_TURING) {
+			return tables.getGoodTuring(this.parserData.getBigramCount(token1, token2));
+		}
+
+		return this.getConditionalProbability(smoothingType, this.parserData.getBigramCount(token1, token2), this.parserData.getUnigramCount(unigramToken));
+	}
+
+	/**
+	 * Get conditional probability of a word given the words before it
+	 *
+	 * @param smoothingType
+	 *            Type of smoothing to apply
+	 * @param count
+	 *            Number of occurrences of the n-gram
+	 * @param contextCount
+	 *            Number of occurrences of the words before the last word of the n-gram
 	 * @return Conditional probability as decimal
 	 */
-	private double getConditionalProbability(final Models smoothingType, final String unigramToken, final String bigramToken) {
-		final double bigramCount = this.parserData.bigramMap.getOrDefault(bigramToken, 0);
-		final double unigramCount = this.parserData.unigramMap.getOrDefault(unigramToken, 0);
+	private double getConditionalProbability(final Models smoothingType, final double count, final double contextCount) {
 		double conditionalProb = 0;
 
 		if (smoothingType == Models.NO_SMOOTHING) {
-			// For no smoothing, just divide bigram count by unigram count
-			if (bigramCount > 0) {
-				conditionalProb = bigramCount / unigramCount;
+			// For no smoothing, just divide n-gram count by context count
+			if (count > 0) {
+				conditionalProb = count / contextCount;
 			}
 		} else if (smoothingType == Models.ADD_ONE_SMOOTHING) {
-			// For add one smoothing - Add one to bigram count and divide by unigram count added by total number of unigrams
-			conditionalProb = (bigramCount + 1) / (unigramCount + this.parserData.unigramMap.size());
-		} else if (smoothingType == Models.GOOD_TURING) {
-			// c* is N(c + 1)/Nc, or N1/N if there is no occurrence
-			final double c = this.parserData.bigramMap.getOrDefault(bigramToken, 0);
-			final double n = this.parserData.frequencyMap.getOrDefault((int) (c + 1), 1);
-			final double cStar = (c + 1) * n / (double) this.parserData.frequencyMap.getOrDefault((int) c, 1);
-
-			// Compute probability with c* computed above
-			conditionalProb = cStar / this.parserData.totalWords;
+			// For add one smoothing - Add one to n-gram count and divide by context count added by total number of unigrams
+			conditionalProb = (count + 1) / (contextCount + this.parserData.getVocabularySize());
 		}
 
 		return conditionalProb;
@@ -107,19 +213,22 @@ public class Smoothing {
 
 		// For each token, get bigrams and compute probability
 		final String[] tokenz = sentence.split(" ");
-		for (final String element : tokenz) {
+		final int[] ids = new int[tokenz.length];
+		for (int i = 0; i < tokenz.length; i++) {
+			ids[i] = this.parserData.getId(tokenz[i]);
+		}
+
+		for (int j = 0; j < tokenz.length; j++) {
 			final String[] strings = new String[tokenz.length + 1];
-			strings[0] = element;
+			strings[0] = tokenz[j];
 			for (int i = 0; i < tokenz.length; i++) {
-				final String bigram = element + " " + tokenz[i];
-
 				// If no smoothing, just get bigram occurrence
 				if (smoothingType == null) {
-					strings[i + 1] = this.parserData.bigramMap.getOrDefault(bigram, 0).toString();
+					strings[i + 1] = Integer.toString(this.parserData.getBigramCount(ids[j], ids[i]));
 				} else {
 					// To get total probability, use the formula for no smoothing
 					final DecimalFormat decimalFormat = new DecimalFormat("#.####");
-					strings[i + 1] = decimalFormat.format(this.getConditionalProbability(smoothingType, tokenz[i], bigram));
+					strings[i + 1] = decimalFormat.format(this.getConditionalProbability(smoothingType, ids[i], ids[j], ids[i]));
 				}
 			}
 
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+/**
+ * Tokenizer that normalizes a line and splits it into tokens in one pass over its characters. Characters other than letters, digits, periods
+ * and spaces are removed, letters are converted to lower case, and tokens are separated by spaces, the same as removing the special
+ * characters, collapsing white spaces and converting to lower case before splitting. The tokens are spans of a buffer that is reused for each
+ * line, so no strings are made
+ *
+ * @author Ekal.Golas
+ */
+public class Tokenizer {
+	private char[]	chars;
+	private int[]	starts;
+	private int[]	lengths;
+	private int		count;
+
+	/**
+	 * Default constructor
+	 */
+	public Tokenizer() {
+		this.chars = new char[256];
+		this.starts = new int[64];
+		this.lengths = new int[64];
+	}
+
+	/**
+	 * Normalize a line and split it into tokens, replacing the tokens of the previous line
+	 *
+	 * @param line
+	 *            Line of input
+	 * @return Number of tokens
+	 */
+	public int tokenize(final CharSequence line) {
+		if (line.length() > this.chars.length) {
+			this.chars = new char[Math.max(line.length(), this.chars.length * 2)];
+		}
+
+		this.count = 0;
+		int size = 0;
+		int start = 0;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (c == ' ') {
+				// A space ends the token before it, if there is one
+				this.addToken(start, size);
+				start = size;
+			} else if (isKept(c)) {
+				this.chars[size++] = toLowerCase(c);
+			}
+		}
+
+		this.addToken(start, size);
+		return this.count;
+	}
+
+	/**
+	 * @return the buffer the tokens are spans of
+	 */
+	public final char[] getChars() {
+		return this.chars;
+	}
+
+	/**
+	 * @return the number of tokens of the last line
+	 */
+	public final int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Get the index of the first character of a token in the buffer
+	 *
+	 * @param token
+	 *            Index of the token
+	 * @return Start of the token
+	 */
+	public int getStart(final int token) {
+		return this.starts[token];
+	}
+
+	/**
+	 * Get the number of characters of a token
+	 *
+	 * @param token
+	 *            Index of the token
+	 * @return Length of the token
+	 */
+	public int getLength(final int token) {
+		return this.lengths[token];
+	}
+
+	/**
+	 * Get a token as a string
+	 *
+	 * @param token
+	 *            Index of the token
+	 * @return Token
+	 */
+	public String getToken(final int token) {
+		return new String(this.chars, this.starts[token], this.lengths[token]);
+	}
+
+	/**
+	 * Normalize a line in one pass, keeping a single space between tokens
+	 *
+	 * @param line
+	 *            Line of input
+	 * @return Line with special characters removed, white spaces collapsed and converted to lower case
+	 */
+	public static String normalize(final CharSequence line) {
+		final char[] chars = new char[line.length()];
+		int size = 0;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (c == ' ' ? size == 0 || chars[size - 1] != ' ' : isKept(c)) {
+				chars[size++] = toLowerCase(c);
+			}
+		}
+
+		return new String(chars, 0, size);
+	}
+
+	/**
+	 * Add a token, if it has any characters
+	 *
+	 * @param start
+	 *            Index of the first character of the token
+	 * @param end
+	 *            Index after the last character of the token
+	 */
+	private void addToken(final int start, final int end) {
+		if (end == start) {
+			return;
+		}
+
+		if (this.count == this.starts.length) {
+			this.starts = Arrays.copyOf(this.starts, this.count * 2);
+			this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+		}
+
+		this.starts[this.count] = start;
+		this.lengths[this.count++] = end - start;
+	}
+
+	/**
+	 * Check if a character is kept in a token
+	 *
+	 * @param c
+	 *            Character
+	 * @return True for letters, digits and periods
+	 */
+	private static boolean isKept(final char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '.';
+	}
+
+	/**
+	 * Convert a letter to lower case
+	 *
+	 * @param c
+	 *            Kept character
+	 * @return Character in lower case
+	 */
+	private static char toLowerCase(final char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * Class to intern words to consecutive integer ids, backed by an open addressing hash table
+ *
+ * @author Ekal.Golas
+ */
+public class Vocabulary {
+	private String[]	words;
+	private String[]	keys;
+	private int[]		ids;
+	private int			size;
+
+	/**
+	 * Default constructor
+	 */
+	public Vocabulary() {
+		this.words = new String[1024];
+		this.keys = new String[2048];
+		this.ids = new int[2048];
+	}
+
+	/**
+	 * Get the id of a word, assigning the next id if it has not been seen
+	 *
+	 * @param word
+	 *            Word to intern
+	 * @return Id of the word
+	 */
+	public int intern(final String word) {
+		int slot = this.slot(word);
+		if (this.keys[slot] != null) {
+			return this.ids[slot];
+		}
+
+		// Grow the table when it is half full, so that probes stay short
+		if (2 * (this.size + 1) > this.keys.length) {
+			this.resize();
+			slot = this.slot(word);
+		}
+
+		if (this.size == this.words.length) {
+			this.words = Arrays.copyOf(this.words, this.size * 2);
+		}
+
+		this.keys[slot] = word;
+		this.ids[slot] = this.size;
+		this.words[this.size] = word;
+		return this.size++;
+	}
+
+	/**
+	 * Get the id of a word held in a span of characters, assigning the next id if it has not been seen. A string is only made for a word that
+	 * has not been seen
+	 *
+	 * @param chars
+	 *            Characters holding the word
+	 * @param offset
+	 *            Index of the first character of the word
+	 * @param length
+	 *            Number of characters of the word
+	 * @return Id of the word
+	 */
+	public int intern(final char[] chars, final int offset, final int length) {
+		final int slot = this.slot(chars, offset, length);
+		return this.keys[slot] != null ? this.ids[slot] : this.intern(new String(chars, offset, length));
+	}
+
+	/**
+	 * Get the id of a word
+	 *
+	 * @param word
+	 *            Word to look up
+	 * @return Id of the word, -1 if it has not been seen
+	 */
+	public int getId(final String word) {
+		final int slot = this.slot(word);
+		return this.keys[slot] == null ? -1 : this.ids[slot];
+	}
+
+	/**
+	 * Get the word for an id
+	 *
+	 * @param id
+	 *            Id of the word
+	 * @return Word
+	 */
+	public String getWord(final int id) {
+		return this.words[id];
+	}
+
+	/**
+	 * @return the number of words
+	 */
+	public final int size() {
+		return this.size;
+	}
+
+	/**
+	 * Find the slot of a word, or the empty slot where it would go
+	 *
+	 * @param word
+	 *            Word to find
+	 * @return Slot in the table
+	 */
+	private int slot(final String word) {
+		final int mask = this.keys.length - 1;
+		int slot = this.home(word.hashCode());
+		while (this.keys[slot] != null && !this.keys[slot].equals(word)) {
+			slot = slot + 1 & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Get the slot a hash starts probing from. The hash is spread by a multiply, whose high bits depend on every bit of the hash, and as many
+	 * of them are kept as the table has slots
+	 *
+	 * @param hash
+	 *            Hash of a word
+	 * @return Slot in the table
+	 */
+	private int home(final int hash) {
+		return hash * 0x9E3779B9 >>> Integer.numberOfLeadingZeros(this.keys.length - 1);
+	}
+
+	/**
+	 * Find the slot of a word held in a span of characters, or the empty slot where it would go. The word is hashed the way a string of it is
+	 *
+	 * @param chars
+	 *            Characters holding the word
+	 * @param offset
+	 *            Index of the first character of the word
+	 * @param length
+	 *            Number of characters of the word
+	 * @return Slot in the table
+	 */
+	private int slot(final char[] chars, final int offset, final int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+
+		final int mask = this.keys.length - 1;
+		int slot = this.home(hash);
+		while (this.keys[slot] != null && !matches(this.keys[slot], chars, offset, length)) {
+			slot = slot + 1 & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Check if a word is the same as a span of characters
+	 *
+	 * @param word
+	 *            Word
+	 * @param chars
+	 *            Characters
+	 * @param offset
+	 *            Index of the first character of the span
+	 * @param length
+	 *            Number of characters of the span
+	 * @return True if they are the same
+	 */
+	private static boolean matches(final String word, final char[] chars, final int offset, final int length) {
+		if (word.length() != length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (word.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Double the hash table and re-insert the words
+	 */
+	private void resize() {
+		this.keys = new String[this.keys.length * 2];
+		this.ids = new int[this.keys.length];
+		for (int id = 0; id < this.size; id++) {
+			final int slot = this.slot(this.words[id]);
+			this.keys[slot] = this.words[id];
+			this.ids[slot] = id;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the smoothing of n-grams of higher orders on a small corpus
+ *
+ * @author Ekal.Golas
+ */
+public class TestNGramTrie {
+	private static File			corpus;
+	private static Smoothing	smoothing;
+
+	/**
+	 * Count the trigrams of a corpus that starts with words that occur nowhere else, so that the n-grams following them have no word before
+	 * them
+	 */
+	@BeforeClass
+	public static void setup() throws IOException {
+		corpus = File.createTempFile("corpus", ".txt");
+		Files.write(corpus.toPath(), Arrays.asList("zz yy xx the cat", "the dog sat on the mat", "the cat sat"));
+		smoothing = new Smoothing(new Parser(corpus.getPath(), 1, 3).parse());
+	}
+
+	/**
+	 * Delete the corpus
+	 */
+	@AfterClass
+	public static void cleanup() {
+		corpus.delete();
+	}
+
+	/**
+	 * Kneser-Ney backs off from a context whose n-grams have no word before them, rather than dividing by their total of 0
+	 */
+	@Test
+	public final void testKneserNeyAtStartOfCorpus() {
+		for (final String sentence : new String[] { "zz yy xx", "zz yy" }) {
+			final double logProbability = smoothing.getLogProbability(sentence, Models.KNESER_NEY);
+			Assert.assertFalse("Probability of '" + sentence + "' is not a number", Double.isNaN(logProbability));
+			Assert.assertTrue("Probability of '" + sentence + "' is above 1", logProbability <= 0);
+		}
+	}
+}
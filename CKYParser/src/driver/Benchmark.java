@@ -0,0 +1,101 @@
+package driver;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import helpers.Grammar;
+import parser.CKYParser;
+import parser.Parser;
+
+/**
+ * Benchmarks for loading the grammar and for parsing sentences of increasing length, to measure performance changes against
+ *
+ * @author Ekal.Golas
+ */
+public class Benchmark {
+	private static final String	CLAUSE	= "he said the company expects revenue";
+
+	private final int			warmup;
+	private final int			iterations;
+	private int					sink;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param warmup
+	 *            Number of untimed runs of each benchmark, so that the JIT compiles the code being measured
+	 * @param iterations
+	 *            Number of timed runs of each benchmark
+	 */
+	public Benchmark(final int warmup, final int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Driver function
+	 *
+	 * @param args
+	 *            Command line arguments: grammar file, and optionally the number of warmup and timed runs
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: Benchmark PATH_TO_GRAMMAR [WARMUP_RUNS] [TIMED_RUNS]");
+			return;
+		}
+
+		final File file = new File(args[0]);
+		final Benchmark benchmark = new Benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 3, args.length > 2 ? Integer.parseInt(args[2]) : 5);
+
+		// Loading the grammar
+		benchmark.measure("Parser.parse " + file.getName(), () -> Parser.parse(file));
+
+		// Parsing sentences of increasing length, built by joining clauses
+		final Grammar grammar = Parser.parse(file);
+		String sentence = CLAUSE;
+		for (int clauses = 1; clauses <= 8; clauses *= 2) {
+			final String[] words = sentence.split(" ");
+			benchmark.measure("CKYParser.parse " + words.length + " words", () -> new CKYParser(grammar, words).parse());
+			benchmark.measure("CKYParser.parse " + words.length + " words, log space", () -> new CKYParser(grammar, words, true).parse());
+			sentence = sentence + " and " + sentence;
+		}
+	}
+
+	/**
+	 * Run an operation untimed to warm up, then time it and print the average and best time per run
+	 *
+	 * @param name
+	 *            Name of the benchmark
+	 * @param operation
+	 *            Operation to time
+	 * @throws Exception
+	 */
+	public void measure(final String name, final Callable<?> operation) throws Exception {
+		for (int i = 0; i < this.warmup; i++) {
+			this.consume(operation.call());
+		}
+
+		long total = 0;
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < this.iterations; i++) {
+			final long start = System.nanoTime();
+			this.consume(operation.call());
+			final long elapsed = System.nanoTime() - start;
+			total += elapsed;
+			best = Math.min(best, elapsed);
+		}
+
+		System.out.println(String.format("%-50s avg %12.3f ms   best %12.3f ms", name, total / 1e6 / this.iterations, best / 1e6));
+	}
+
+	/**
+	 * Keep the result of an operation alive, so that the JIT cannot remove the work that produced it
+	 *
+	 * @param result
+	 *            Result of the operation
+	 */
+	private void consume(final Object result) {
+		this.sink ^= System.identityHashCode(result);
+	}
+}
\ No newline at end of file
@@ -1,8 +1,13 @@
 package driver;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -11,7 +16,9 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import helpers.Rule;
+import helpers.Grammar;
+import parser.BatchParser;
+import parser.BinaryGrammar;
 import parser.CKYParser;
 import parser.Parser;
 
@@ -34,33 +41,124 @@ public class Solution {
 
 		// Get arguments
 		final File file = new File(cmd.getOptionValue("pcfg"));
-		final String[] words = cmd.getOptionValue("text").split(" ");
 
 		// Parse the file
-		List<Rule> rules = null;
+		Grammar grammar = null;
 		try {
-			rules = Parser.parse(file);
+			grammar = Parser.parse(file);
 			System.out.println("Provided grammar in the file: " + file.getName() + " parsed successfully!!");
 		} catch (final IOException e) {
 			System.out.println("Unable to parse the grammar: " + e.getMessage());
+			return;
+		}
+
+		// Write the compiled grammar if asked to, else parse each sentence of the batch if provided, else parse the sentence
+		if (cmd.hasOption("compile")) {
+			compile(cmd, grammar);
+		} else if (cmd.hasOption("batch")) {
+			parseBatch(cmd, grammar);
+		} else {
+			parseSentence(cmd, grammar);
 		}
 
+		// Print total running time
+		System.out.println("\nTotal running time: " + (System.currentTimeMillis() - start) + " milliseconds");
+	}
+
+	/**
+	 * Write the grammar to a compiled binary file that loads without parsing the rules
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 */
+	private static void compile(final CommandLine cmd, final Grammar grammar) {
+		final File file = new File(cmd.getOptionValue("compile"));
+		try {
+			BinaryGrammar.write(grammar, file);
+			System.out.println("Compiled grammar written to the file: " + file.getName());
+		} catch (final IOException e) {
+			System.out.println("Unable to write the compiled grammar: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Get and print the parse tree for the sentence provided
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 */
+	private static void parseSentence(final CommandLine cmd, final Grammar grammar) {
 		// Get parse tree
-		final CKYParser parser = new CKYParser(rules, words);
+		final String[] words = cmd.getOptionValue("text").split(" ");
+		final ExecutorService executor = cmd.hasOption("threads") ? new ForkJoinPool(Integer.parseInt(cmd.getOptionValue("threads"))) : null;
+		final CKYParser parser = new CKYParser(grammar, words, cmd.hasOption("log"), getBeamSize(cmd), getThreshold(cmd), executor);
 		final String tree = parser.parse();
+		if (executor != null) {
+			executor.shutdown();
+		}
 
 		// Print result
-		final double probInMatrix = parser.getProb().getProbInMatrix(0, words.length, "s");
-		if (probInMatrix == 0.0) {
+		if (!parser.isRecognized()) {
 			System.out.println("Sentence not recognized by the given grammar: " + cmd.getOptionValue("text"));
 		} else {
 			System.out.println("Parse tree for the sentence: " + cmd.getOptionValue("text"));
 			System.out.println(tree);
-			System.out.println("Sentence Probability: " + probInMatrix);
+			System.out.println("Sentence Probability: " + parser.getSentenceProb());
+			System.out.println("Sentence Log Probability: " + parser.getSentenceLogProb());
 		}
 
-		// Print total running time
-		System.out.println("\nTotal running time: " + (System.currentTimeMillis() - start) + " milliseconds");
+		System.out.println("Candidates pruned: " + parser.getPrunedCount());
+	}
+
+	/**
+	 * Parse each sentence in the batch file, or standard input, on a pool of workers and print the parse trees in input order
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 */
+	private static void parseBatch(final CommandLine cmd, final Grammar grammar) {
+		final int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads")) : Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final String batch = cmd.getOptionValue("batch");
+		try (BufferedReader reader = new BufferedReader("-".equals(batch) ? new InputStreamReader(System.in) : new FileReader(batch))) {
+			final BatchParser batchParser = new BatchParser(grammar, cmd.hasOption("log"), getBeamSize(cmd), getThreshold(cmd), executor, threads * 4);
+			batchParser.parse(reader, System.out);
+
+			System.out.println();
+			batchParser.printStatistics(System.out);
+		} catch (final IOException e) {
+			System.out.println("Unable to parse the batch: " + e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Get number of best heads to keep in each cell of the chart
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @return Beam size, 0 to keep all
+	 */
+	private static int getBeamSize(final CommandLine cmd) {
+		return cmd.hasOption("beam") ? Integer.parseInt(cmd.getOptionValue("beam")) : 0;
+	}
+
+	/**
+	 * Get lowest probability of a head relative to the best head in its cell to keep
+	 *
+	 * @param cmd
+	 *            Command line arguments
+	 * @return Threshold, 0 to keep all
+	 */
+	private static double getThreshold(final CommandLine cmd) {
+		return cmd.hasOption("threshold") ? Double.parseDouble(cmd.getOptionValue("threshold")) : 0.0;
 	}
 
 	/**
@@ -73,8 +171,14 @@ public class Solution {
 	private static CommandLine validateArguments(final String[] args) {
 		// Get options
 		final Options options = new Options();
-		options.addOption("pcfg", "grammar", true, "The file that contains a set of rules for Lexicalized PCFG");
+		options.addOption("pcfg", "grammar", true, "The file that contains a set of rules for Lexicalized PCFG, or the grammar compiled from it");
+		options.addOption("compile", "compiledGrammar", true, "The file to write the grammar to in compiled form, for fast loading");
 		options.addOption("text", "testString", true, "The string to generate the parse tree for");
+		options.addOption("log", "logSpace", false, "Score the chart with log probabilities, so that long sentences do not underflow");
+		options.addOption("threads", "threads", true, "Number of threads to fill the cells of a span length concurrently, or to parse the sentences of a batch on");
+		options.addOption("beam", "beamSize", true, "Number of best candidates to keep in each cell of the chart");
+		options.addOption("threshold", "threshold", true, "Lowest probability of a candidate relative to the best one in its cell to keep");
+		options.addOption("batch", "batchFile", true, "The file with a sentence on each line to generate parse trees for, - for standard input");
 
 		// Parse arguments
 		final CommandLineParser commandLineParser = new DefaultParser();
@@ -89,7 +193,7 @@ public class Solution {
 		}
 
 		// Validate
-		if (!cmd.hasOption("pcfg") || !cmd.hasOption("text")) {
+		if (!cmd.hasOption("pcfg") || !cmd.hasOption("text") && !cmd.hasOption("batch") && !cmd.hasOption("compile")) {
 			final HelpFormatter formatter = new HelpFormatter();
 			formatter.printHelp("CKY Parser", options);
 			System.exit(2);
@@ -0,0 +1,251 @@
+package helpers;
+
+import java.util.Arrays;
+
+/**
+ * Class to represent the CKY chart. Each cell (row, col) is backed by flat primitive arrays indexed by the interned id of a non terminal, and the
+ * backpointers for a symbol are packed into a single long as (mid, left, right). Scores are either probabilities or log probabilities, depending on
+ * the score an unset symbol has. Each cell is only written through its own arrays, so distinct cells can be filled by different threads as long as
+ * the cells they read are complete
+ *
+ * @author Ekal.Golas
+ */
+public class Chart {
+	private static final int	SYMBOL_BITS	= 24;
+	private static final long	SYMBOL_MASK	= (1L << SYMBOL_BITS) - 1;
+
+	private final int			size;
+	private final int			symbolCount;
+	private final double		none;
+	private final double[][]	scores;
+	private final long[][]		backs;
+	private final int[][]		heads;
+	private final int[]			headCounts;
+
+	/**
+	 * Constructor
+	 *
+	 * @param length
+	 *            Number of words in the sentence
+	 * @param symbolCount
+	 *            Number of non terminals in the grammar
+	 * @param none
+	 *            Score of a symbol that has not been set, 0 for probabilities and negative infinity for log probabilities
+	 */
+	public Chart(final int length, final int symbolCount, final double none) {
+		this.size = length + 1;
+		this.symbolCount = symbolCount;
+		this.none = none;
+		this.scores = new double[this.size * this.size][];
+		this.backs = new long[this.size * this.size][];
+		this.heads = new int[this.size * this.size][];
+		this.headCounts = new int[this.size * this.size];
+	}
+
+	/**
+	 * Get index of a cell in the flat arrays
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @return Index of the cell
+	 */
+	private int cell(final int row, final int col) {
+		return row * this.size + col;
+	}
+
+	/**
+	 * @return the score of a symbol that has not been set
+	 */
+	public final double getNone() {
+		return this.none;
+	}
+
+	/**
+	 * Get a specific score in the chart
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Score for chart[row][col][symbol], {@link #getNone()} if it has not been set
+	 */
+	public double getScore(final int row, final int col, final int symbol) {
+		final double[] cellScores = this.scores[this.cell(row, col)];
+		if (cellScores == null || symbol < 0) {
+			return this.none;
+		}
+
+		return cellScores[symbol];
+	}
+
+	/**
+	 * Set a specific score and its backpointers in the chart. A mid of -1 marks a chain of unary rules and a left of -1 marks a lexical rule
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @param score
+	 *            Score to set
+	 * @param mid
+	 *            Split point of the span
+	 * @param left
+	 *            Id of the left (or only) child
+	 * @param right
+	 *            Id of the right child, or the index of the chain in the unary closure of the left child
+	 */
+	public void setScore(final int row, final int col, final int symbol, final double score, final int mid, final int left, final int right) {
+		final int cell = this.cell(row, col);
+		if (this.scores[cell] == null) {
+			this.scores[cell] = new double[this.symbolCount];
+			Arrays.fill(this.scores[cell], this.none);
+			this.backs[cell] = new long[this.symbolCount];
+			this.heads[cell] = new int[8];
+		}
+
+		// Add the symbol to the heads of this cell the first time it is set
+		if (this.scores[cell][symbol] == this.none) {
+			if (this.headCounts[cell] == this.heads[cell].length) {
+				this.heads[cell] = Arrays.copyOf(this.heads[cell], this.heads[cell].length * 2);
+			}
+
+			this.heads[cell][this.headCounts[cell]++] = symbol;
+		}
+
+		this.scores[cell][symbol] = score;
+		this.backs[cell][symbol] = (long) (mid + 1) << 2 * SYMBOL_BITS | (long) (left + 1) << SYMBOL_BITS | right + 1;
+	}
+
+	/**
+	 * Get number of heads set in a cell
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @return Number of heads
+	 */
+	public int getHeadCount(final int row, final int col) {
+		return this.headCounts[this.cell(row, col)];
+	}
+
+	/**
+	 * Get a head set in a cell, in the order they were first set
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param index
+	 *            Index of the head, less than {@link #getHeadCount(int, int)}
+	 * @return Id of the head
+	 */
+	public int getHead(final int row, final int col, final int index) {
+		return this.heads[this.cell(row, col)][index];
+	}
+
+	/**
+	 * Remove all heads of a cell that score below a cutoff. Their backpointers are kept, so that trees through them that were already built can still
+	 * be followed
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param cutoff
+	 *            Lowest score to keep
+	 * @return Number of heads removed
+	 */
+	public int prune(final int row, final int col, final double cutoff) {
+		final int cell = this.cell(row, col);
+		if (this.scores[cell] == null) {
+			return 0;
+		}
+
+		// Keep the heads at or above the cutoff in the order they were set
+		int kept = 0;
+		for (int i = 0; i < this.headCounts[cell]; i++) {
+			final int symbol = this.heads[cell][i];
+			if (this.scores[cell][symbol] >= cutoff) {
+				this.heads[cell][kept++] = symbol;
+			} else {
+				this.scores[cell][symbol] = this.none;
+			}
+		}
+
+		final int pruned = this.headCounts[cell] - kept;
+		this.headCounts[cell] = kept;
+		return pruned;
+	}
+
+	/**
+	 * Get the packed backpointers for a symbol
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Packed backpointers, 0 if they have not been set
+	 */
+	private long getBack(final int row, final int col, final int symbol) {
+		final long[] cellBacks = this.backs[this.cell(row, col)];
+		if (cellBacks == null || symbol < 0) {
+			return 0L;
+		}
+
+		return cellBacks[symbol];
+	}
+
+	/**
+	 * Get the split point for a symbol
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Mid pointer, -1 if the symbol was produced by a lexical or unary rule
+	 */
+	public int getMid(final int row, final int col, final int symbol) {
+		return (int) (this.getBack(row, col, symbol) >>> 2 * SYMBOL_BITS) - 1;
+	}
+
+	/**
+	 * Get the left (or only) child for a symbol
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Id of the left child, -1 if the symbol was produced by a lexical rule
+	 */
+	public int getLeft(final int row, final int col, final int symbol) {
+		return (int) (this.getBack(row, col, symbol) >>> SYMBOL_BITS & SYMBOL_MASK) - 1;
+	}
+
+	/**
+	 * Get the right child for a symbol
+	 *
+	 * @param row
+	 *            Specific row
+	 * @param col
+	 *            Specific column
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Id of the right child, or the index of the chain for a chain of unary rules
+	 */
+	public int getRight(final int row, final int col, final int symbol) {
+		return (int) (this.getBack(row, col, symbol) & SYMBOL_MASK) - 1;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,305 @@
+package helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Class to represent a grammar compiled into lookup tables for the CKY parser. Non terminals are interned to consecutive integer ids so that the
+ * chart can be indexed by them
+ *
+ * @author Ekal.Golas
+ */
+public class Grammar {
+	private static final Rule[]			NO_RULES	= new Rule[0];
+
+	private final List<Rule>			rules;
+	private final List<String>			symbols;
+	private final Map<String, Integer>	symbolIds;
+	private final Map<String, Rule[]>	lexicalRules;
+	private final Rule[][]				unaryRules;
+	private final Rule[][]				binaryRules;
+	private final UnaryClosure[]		unaryClosures;
+
+	/**
+	 * Constructor that interns the non terminals and indexes the rules by the symbols they produce
+	 *
+	 * @param rules
+	 *            Grammar definition of rules
+	 */
+	public Grammar(final List<Rule> rules) {
+		this(intern(rules), rules);
+	}
+
+	/**
+	 * Constructor that indexes rules whose non terminals are already interned by the symbols they produce
+	 *
+	 * @param symbols
+	 *            Non terminals in the order of their ids
+	 * @param rules
+	 *            Grammar definition of rules, with the ids set and no symbol ids for lexical rules
+	 */
+	public Grammar(final List<String> symbols, final List<Rule> rules) {
+		this.rules = rules;
+		this.symbols = symbols;
+		this.symbolIds = new HashMap<>();
+		for (int i = 0; i < symbols.size(); i++) {
+			this.symbolIds.put(symbols.get(i), i);
+		}
+
+		// Group lexical rules by word, unary rules by their child and binary rules by their left child
+		final Map<String, List<Rule>> lexical = new HashMap<>();
+		final List<List<Rule>> unary = new ArrayList<>();
+		final List<List<Rule>> binary = new ArrayList<>();
+		for (int i = 0; i < symbols.size(); i++) {
+			unary.add(new ArrayList<>());
+			binary.add(new ArrayList<>());
+		}
+
+		for (final Rule rule : rules) {
+			final int[] ids = rule.getSymbolIds();
+			if (ids == null) {
+				lexical.computeIfAbsent(rule.getSymbols()[0], key -> new ArrayList<>()).add(rule);
+			} else if (ids.length == 1) {
+				unary.get(ids[0]).add(rule);
+			} else if (ids.length == 2) {
+				binary.get(ids[0]).add(rule);
+			}
+		}
+
+		this.lexicalRules = new HashMap<>();
+		for (final Map.Entry<String, List<Rule>> entry : lexical.entrySet()) {
+			this.lexicalRules.put(entry.getKey(), entry.getValue().toArray(NO_RULES));
+		}
+
+		this.unaryRules = new Rule[symbols.size()][];
+		this.binaryRules = new Rule[symbols.size()][];
+		for (int i = 0; i < symbols.size(); i++) {
+			this.unaryRules[i] = unary.get(i).toArray(NO_RULES);
+			this.binaryRules[i] = binary.get(i).toArray(NO_RULES);
+		}
+
+		// Precompute the best chains of unary rules from each non terminal
+		this.unaryClosures = this.closeUnaryRules();
+	}
+
+	/**
+	 * Find the most likely chain of unary rules from each non terminal to every head reachable from it. Since no rule has a probability above 1,
+	 * extending a chain never makes it more likely, so the best chains are found best first as in Dijkstra's algorithm
+	 *
+	 * @return Unary closure of each non terminal, indexed by its id
+	 */
+	private UnaryClosure[] closeUnaryRules() {
+		final int count = this.symbols.size();
+		final UnaryClosure[] closures = new UnaryClosure[count];
+		final UnaryClosure empty = new UnaryClosure(new int[0], new double[0], new int[0][]);
+		final double[] best = new double[count];
+		final int[] previous = new int[count];
+		final List<Integer> reached = new ArrayList<>();
+		final PriorityQueue<double[]> queue = new PriorityQueue<>((entry1, entry2) -> Double.compare(entry2[0], entry1[0]));
+
+		for (int child = 0; child < count; child++) {
+			if (this.unaryRules[child].length == 0) {
+				closures[child] = empty;
+				continue;
+			}
+
+			// Expand the most likely chain first, skipping entries that have been improved since they were queued
+			best[child] = 1.0;
+			reached.add(child);
+			queue.add(new double[] { 1.0, child });
+			while (!queue.isEmpty()) {
+				final double[] entry = queue.poll();
+				final int symbol = (int) entry[1];
+				if (entry[0] < best[symbol]) {
+					continue;
+				}
+
+				for (final Rule rule : this.unaryRules[symbol]) {
+					final int head = rule.getHeadId();
+					final double prob = entry[0] * rule.getProb();
+					if (prob > best[head]) {
+						if (best[head] == 0.0) {
+							reached.add(head);
+						}
+
+						best[head] = prob;
+						previous[head] = symbol;
+						queue.add(new double[] { prob, head });
+					}
+				}
+			}
+
+			// Get the chain to each head by following the previous symbols down to the child
+			final int[] heads = new int[reached.size() - 1];
+			final double[] probs = new double[heads.length];
+			final int[][] chains = new int[heads.length][];
+			for (int i = 0; i < heads.length; i++) {
+				heads[i] = reached.get(i + 1);
+				probs[i] = best[heads[i]];
+
+				final List<Integer> chain = new ArrayList<>();
+				for (int symbol = previous[heads[i]]; symbol != child; symbol = previous[symbol]) {
+					chain.add(symbol);
+				}
+
+				chains[i] = chain.stream().mapToInt(Integer::intValue).toArray();
+			}
+
+			closures[child] = new UnaryClosure(heads, probs, chains);
+
+			// Reset the scores of the symbols reached for the next child
+			for (final int symbol : reached) {
+				best[symbol] = 0.0;
+			}
+
+			reached.clear();
+		}
+
+		return closures;
+	}
+
+	/**
+	 * Intern the heads and the non terminals on the right hand side of each rule to consecutive ids, and set them on the rules
+	 *
+	 * @param rules
+	 *            Grammar definition of rules
+	 * @return Non terminals in the order of their ids
+	 */
+	private static List<String> intern(final List<Rule> rules) {
+		final List<String> symbols = new ArrayList<>();
+		final Map<String, Integer> ids = new HashMap<>();
+
+		// Get all the non terminals, so that rules with a single symbol can be told apart as lexical or unary
+		final Set<String> heads = new HashSet<>();
+		for (final Rule rule : rules) {
+			heads.add(rule.getHead());
+		}
+
+		for (final Rule rule : rules) {
+			rule.setHeadId(intern(rule.getHead(), symbols, ids));
+
+			// Lexical rules produce a word, which is not interned
+			final String[] ruleSymbols = rule.getSymbols();
+			if (ruleSymbols.length == 1 && (rule.isLexical() || !heads.contains(ruleSymbols[0]))) {
+				rule.setLexical(true);
+				continue;
+			}
+
+			final int[] symbolIds = new int[ruleSymbols.length];
+			for (int i = 0; i < symbolIds.length; i++) {
+				symbolIds[i] = intern(ruleSymbols[i], symbols, ids);
+			}
+
+			rule.setSymbolIds(symbolIds);
+		}
+
+		return symbols;
+	}
+
+	/**
+	 * Get the id for a non terminal, assigning the next id if it has not been seen
+	 *
+	 * @param symbol
+	 *            Non terminal
+	 * @param symbols
+	 *            Non terminals in the order of their ids
+	 * @param ids
+	 *            Ids of the non terminals
+	 * @return Interned id
+	 */
+	private static int intern(final String symbol, final List<String> symbols, final Map<String, Integer> ids) {
+		Integer id = ids.get(symbol);
+		if (id == null) {
+			id = symbols.size();
+			symbols.add(symbol);
+			ids.put(symbol, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Get all rules that directly produce a word
+	 *
+	 * @param word
+	 *            Word in lower case
+	 * @return Array of {@link Rule}
+	 */
+	public Rule[] getLexicalRules(final String word) {
+		return this.lexicalRules.getOrDefault(word, NO_RULES);
+	}
+
+	/**
+	 * Get all unary rules that produce a non terminal
+	 *
+	 * @param child
+	 *            Id of the non terminal produced
+	 * @return Array of {@link Rule}
+	 */
+	public Rule[] getUnaryRules(final int child) {
+		return this.unaryRules[child];
+	}
+
+	/**
+	 * Get the best chains of unary rules that produce a non terminal
+	 *
+	 * @param child
+	 *            Id of the non terminal produced
+	 * @return {@link UnaryClosure} of the non terminal
+	 */
+	public UnaryClosure getUnaryClosure(final int child) {
+		return this.unaryClosures[child];
+	}
+
+	/**
+	 * Get all binary rules whose left child is a non terminal
+	 *
+	 * @param left
+	 *            Id of the left non terminal
+	 * @return Array of {@link Rule}
+	 */
+	public Rule[] getBinaryRules(final int left) {
+		return this.binaryRules[left];
+	}
+
+	/**
+	 * Get the id of a non terminal
+	 *
+	 * @param symbol
+	 *            Non terminal in lower case
+	 * @return Interned id, or -1 if the grammar does not have it
+	 */
+	public int getSymbolId(final String symbol) {
+		return this.symbolIds.getOrDefault(symbol, -1);
+	}
+
+	/**
+	 * Get the non terminal for an id
+	 *
+	 * @param id
+	 *            Interned id
+	 * @return Non terminal
+	 */
+	public String getSymbol(final int id) {
+		return this.symbols.get(id);
+	}
+
+	/**
+	 * @return the number of non terminals
+	 */
+	public final int getSymbolCount() {
+		return this.symbols.size();
+	}
+
+	/**
+	 * @return the rules
+	 */
+	public final List<Rule> getRules() {
+		return this.rules;
+	}
+}
\ No newline at end of file
@@ -7,8 +7,12 @@ package helpers;
  */
 public class Rule {
 	private double		prob;
+	private double		logProb;
 	private String[]	symbols;
 	private String		head;
+	private boolean		lexical;
+	private int			headId;
+	private int[]		symbolIds;
 
 	/*
 	 * (non-Javadoc)
@@ -33,6 +37,14 @@ public class Rule {
 	 */
 	public final void setProb(final double prob) {
 		this.prob = prob;
+		this.logProb = Math.log(prob);
+	}
+
+	/**
+	 * @return the natural logarithm of the prob
+	 */
+	public final double getLogProb() {
+		return this.logProb;
 	}
 
 	/**
@@ -64,4 +76,49 @@ public class Rule {
 	public void setHead(final String head) {
 		this.head = head;
 	}
+
+	/**
+	 * @return true if the rule produces a terminal
+	 */
+	public final boolean isLexical() {
+		return this.lexical;
+	}
+
+	/**
+	 * @param lexical
+	 *            the lexical to set
+	 */
+	public final void setLexical(final boolean lexical) {
+		this.lexical = lexical;
+	}
+
+	/**
+	 * @return the interned id of the head
+	 */
+	public final int getHeadId() {
+		return this.headId;
+	}
+
+	/**
+	 * @param headId
+	 *            the headId to set
+	 */
+	public final void setHeadId(final int headId) {
+		this.headId = headId;
+	}
+
+	/**
+	 * @return the interned ids of the symbols, null for lexical rules
+	 */
+	public final int[] getSymbolIds() {
+		return this.symbolIds;
+	}
+
+	/**
+	 * @param symbolIds
+	 *            the symbolIds to set
+	 */
+	public final void setSymbolIds(final int[] symbolIds) {
+		this.symbolIds = symbolIds;
+	}
 }
\ No newline at end of file
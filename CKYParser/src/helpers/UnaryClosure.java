@@ -0,0 +1,77 @@
+package helpers;
+
+/**
+ * Class to represent the best chains of unary rules from a non terminal. For each head A reachable from the child B by unary rules, it holds the
+ * probability of the most likely chain A =>* B and the non terminals in between
+ *
+ * @author Ekal.Golas
+ */
+public class UnaryClosure {
+	private final int[]		heads;
+	private final double[]	probs;
+	private final double[]	logProbs;
+	private final int[][]	chains;
+
+	/**
+	 * Constructor
+	 *
+	 * @param heads
+	 *            Ids of the heads reachable from the child
+	 * @param probs
+	 *            Probability of the best chain to each head
+	 * @param chains
+	 *            Ids of the non terminals between each head and the child, from the top of the chain down
+	 */
+	public UnaryClosure(final int[] heads, final double[] probs, final int[][] chains) {
+		this.heads = heads;
+		this.probs = probs;
+		this.chains = chains;
+		this.logProbs = new double[probs.length];
+		for (int i = 0; i < probs.length; i++) {
+			this.logProbs[i] = Math.log(probs[i]);
+		}
+	}
+
+	/**
+	 * @return the number of heads reachable from the child
+	 */
+	public final int size() {
+		return this.heads.length;
+	}
+
+	/**
+	 * @param index
+	 *            Index of the chain
+	 * @return the id of the head at the top of the chain
+	 */
+	public final int getHead(final int index) {
+		return this.heads[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of the chain
+	 * @return the probability of the chain
+	 */
+	public final double getProb(final int index) {
+		return this.probs[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of the chain
+	 * @return the natural logarithm of the probability of the chain
+	 */
+	public final double getLogProb(final int index) {
+		return this.logProbs[index];
+	}
+
+	/**
+	 * @param index
+	 *            Index of the chain
+	 * @return the ids of the non terminals between the head and the child, from the top of the chain down
+	 */
+	public final int[] getChain(final int index) {
+		return this.chains[index];
+	}
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import helpers.Grammar;
+
+/**
+ * Class to parse a stream of sentences with one grammar on a pool of workers, one {@link CKYParser} per sentence
+ *
+ * @author Ekal.Golas
+ */
+public class BatchParser {
+	private final Grammar			grammar;
+	private final boolean			logSpace;
+	private final int				beamSize;
+	private final double			threshold;
+	private final ExecutorService	executor;
+	private final int				window;
+	private long[]					latencies;
+	private int						count;
+	private long					elapsed;
+	private long					pruned;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 * @param logSpace
+	 *            True to score the charts with log probabilities
+	 * @param beamSize
+	 *            Number of best heads to keep in each cell, 0 to keep all
+	 * @param threshold
+	 *            Lowest probability of a head relative to the best head in its cell to keep, 0 to keep all
+	 * @param executor
+	 *            Executor to parse the sentences on
+	 * @param window
+	 *            Maximum number of sentences being parsed or waiting to be written at a time
+	 */
+	public BatchParser(final Grammar grammar,
+			final boolean logSpace,
+			final int beamSize,
+			final double threshold,
+			final ExecutorService executor,
+			final int window) {
+		this.grammar = grammar;
+		this.logSpace = logSpace;
+		this.beamSize = beamSize;
+		this.threshold = threshold;
+		this.executor = executor;
+		this.window = window;
+		this.latencies = new long[1024];
+	}
+
+	/**
+	 * Parse each line of the reader as a sentence and write the results in input order
+	 *
+	 * @param reader
+	 *            Reader with a sentence on each line
+	 * @param out
+	 *            Stream to write a parse tree, or a message if the sentence is not recognized, on each line
+	 * @throws IOException
+	 */
+	public void parse(final BufferedReader reader, final PrintStream out) throws IOException {
+		final long start = System.nanoTime();
+		final Queue<Future<String>> pending = new ArrayDeque<>();
+
+		// Submit each sentence, writing the oldest one once too many are pending
+		for (String line; (line = reader.readLine()) != null;) {
+			final String sentence = line.trim();
+			pending.add(this.executor.submit(() -> this.parseSentence(sentence)));
+			if (pending.size() >= this.window) {
+				out.println(this.take(pending));
+			}
+		}
+
+		// Write the rest of the sentences
+		while (!pending.isEmpty()) {
+			out.println(this.take(pending));
+		}
+
+		this.elapsed = System.nanoTime() - start;
+	}
+
+	/**
+	 * Parse a sentence and record how long it took
+	 *
+	 * @param sentence
+	 *            Sentence to parse
+	 * @return Parse tree, or a message if the sentence is not recognized
+	 */
+	private String parseSentence(final String sentence) {
+		if (sentence.isEmpty()) {
+			return "";
+		}
+
+		final long start = System.nanoTime();
+		final CKYParser parser = new CKYParser(this.grammar, sentence.split("\\s+"), this.logSpace, this.beamSize, this.threshold, null);
+		final String tree = parser.parse();
+		this.record(System.nanoTime() - start, parser.getPrunedCount());
+
+		return tree == null ? "Sentence not recognized by the given grammar: " + sentence : tree;
+	}
+
+	/**
+	 * Wait for the oldest pending sentence
+	 *
+	 * @param pending
+	 *            Sentences in input order
+	 * @return Result of the oldest sentence
+	 * @throws IOException
+	 */
+	private String take(final Queue<Future<String>> pending) throws IOException {
+		try {
+			return pending.poll().get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to parse: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Record the time taken to parse a sentence
+	 *
+	 * @param latency
+	 *            Time in nanoseconds
+	 * @param prunedCount
+	 *            Number of candidates pruned from the chart
+	 */
+	private synchronized void record(final long latency, final long prunedCount) {
+		this.pruned += prunedCount;
+		if (this.count == this.latencies.length) {
+			this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+		}
+
+		this.latencies[this.count++] = latency;
+	}
+
+	/**
+	 * Print throughput and latency of the sentences parsed
+	 *
+	 * @param out
+	 *            Stream to print to
+	 */
+	public synchronized void printStatistics(final PrintStream out) {
+		final long[] sorted = Arrays.copyOf(this.latencies, this.count);
+		Arrays.sort(sorted);
+
+		out.println("Sentences parsed: " + this.count);
+		out.println("Throughput: " + String.format("%.2f", this.count / (this.elapsed / 1e9)) + " sentences/sec");
+		if (this.count > 0) {
+			out.println("Latency p50: " + String.format("%.2f", percentile(sorted, 0.50) / 1e6) + " milliseconds");
+			out.println("Latency p99: " + String.format("%.2f", percentile(sorted, 0.99) / 1e6) + " milliseconds");
+		}
+
+		out.println("Candidates pruned: " + this.pruned);
+	}
+
+	/**
+	 * Get a percentile by the nearest rank method
+	 *
+	 * @param sorted
+	 *            Sorted values
+	 * @param fraction
+	 *            Percentile as a fraction
+	 * @return Value at the percentile
+	 */
+	private static long percentile(final long[] sorted, final double fraction) {
+		final int rank = (int) Math.ceil(fraction * sorted.length);
+		return sorted[Math.max(rank - 1, 0)];
+	}
+}
\ No newline at end of file
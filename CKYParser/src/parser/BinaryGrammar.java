@@ -0,0 +1,189 @@
+package parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import helpers.Grammar;
+import helpers.Rule;
+
+/**
+ * Class to write a compiled grammar to a compact binary file and to load it back without parsing the rules again. The file holds the non
+ * terminals in the order of their ids, the words of the lexicon, and the rules as ids into those tables
+ *
+ * @author Ekal.Golas
+ */
+public class BinaryGrammar {
+	private static final int	MAGIC	= 0x434B5947;
+	private static final int	VERSION	= 1;
+
+	/**
+	 * Check if a file is a compiled grammar
+	 *
+	 * @param file
+	 *            Grammar file
+	 * @return True if the file starts with the header of a compiled grammar
+	 * @throws IOException
+	 */
+	public static boolean isBinary(final File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			return file.length() >= 4 && input.readInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Write a grammar to a file
+	 *
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 * @param file
+	 *            File to write to
+	 * @throws IOException
+	 */
+	public static void write(final Grammar grammar, final File file) throws IOException {
+		// Give each word of the lexicon an id
+		final List<String> words = new ArrayList<>();
+		final Map<String, Integer> wordIds = new HashMap<>();
+		for (final Rule rule : grammar.getRules()) {
+			if (rule.getSymbolIds() == null && !wordIds.containsKey(rule.getSymbols()[0])) {
+				wordIds.put(rule.getSymbols()[0], words.size());
+				words.add(rule.getSymbols()[0]);
+			}
+		}
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+
+			// Write the symbol table and the lexicon
+			output.writeInt(grammar.getSymbolCount());
+			for (int i = 0; i < grammar.getSymbolCount(); i++) {
+				writeString(output, grammar.getSymbol(i));
+			}
+
+			output.writeInt(words.size());
+			for (final String word : words) {
+				writeString(output, word);
+			}
+
+			// Write each rule as its head, the number of symbols it produces (-1 for a word), the ids of the symbols and its probability
+			output.writeInt(grammar.getRules().size());
+			for (final Rule rule : grammar.getRules()) {
+				output.writeInt(rule.getHeadId());
+				if (rule.getSymbolIds() == null) {
+					output.writeInt(-1);
+					output.writeInt(wordIds.get(rule.getSymbols()[0]));
+				} else {
+					output.writeInt(rule.getSymbolIds().length);
+					for (final int id : rule.getSymbolIds()) {
+						output.writeInt(id);
+					}
+				}
+
+				output.writeDouble(rule.getProb());
+			}
+		}
+	}
+
+	/**
+	 * Load a grammar by memory mapping a file written by {@link #write(Grammar, File)}
+	 *
+	 * @param file
+	 *            Compiled grammar file
+	 * @return Grammar compiled into lookup tables
+	 * @throws IOException
+	 */
+	public static Grammar read(final File file) throws IOException {
+		final MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		// Validate the header
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Not a compiled grammar: " + file.getName());
+		}
+
+		// Read the symbol table and the lexicon
+		final List<String> symbols = new ArrayList<>();
+		for (int i = buffer.getInt(); i > 0; i--) {
+			symbols.add(readString(buffer));
+		}
+
+		final String[] words = new String[buffer.getInt()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = readString(buffer);
+		}
+
+		// Read the rules, sharing the strings of the tables
+		final int count = buffer.getInt();
+		final List<Rule> rules = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final Rule rule = new Rule();
+			rule.setHeadId(buffer.getInt());
+			rule.setHead(symbols.get(rule.getHeadId()));
+
+			final int length = buffer.getInt();
+			if (length < 0) {
+				rule.setLexical(true);
+				rule.setSymbols(new String[] { words[buffer.getInt()] });
+			} else {
+				final int[] ids = new int[length];
+				final String[] ruleSymbols = new String[length];
+				for (int j = 0; j < length; j++) {
+					ids[j] = buffer.getInt();
+					ruleSymbols[j] = symbols.get(ids[j]);
+				}
+
+				rule.setSymbolIds(ids);
+				rule.setSymbols(ruleSymbols);
+			}
+
+			rule.setProb(buffer.getDouble());
+			rules.add(rule);
+		}
+
+		return new Grammar(symbols, rules);
+	}
+
+	/**
+	 * Write a string as its length followed by its UTF-8 bytes
+	 *
+	 * @param output
+	 *            Stream to write to
+	 * @param string
+	 *            String to write
+	 * @throws IOException
+	 */
+	private static void writeString(final DataOutputStream output, final String string) throws IOException {
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutputStream, String)}
+	 *
+	 * @param buffer
+	 *            Buffer to read from
+	 * @return String read
+	 */
+	private static String readString(final ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
\ No newline at end of file
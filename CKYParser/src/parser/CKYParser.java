@@ -1,198 +1,379 @@
 package parser;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
-import helpers.BackpointerMatrix;
-import helpers.Pointers;
-import helpers.ProbabilityMatrix;
+import helpers.Chart;
+import helpers.Grammar;
 import helpers.Rule;
-import util.Util;
+import helpers.UnaryClosure;
 
 /**
  * @author Ekal.Golas
  */
 public class CKYParser {
-	private final BackpointerMatrix	backs;
-	private final List<Rule>		grammar;
-	private final ProbabilityMatrix	probs;
+	private static final String		START	= "s";
+
+	private final Chart				chart;
+	private final Grammar			grammar;
 	private final String[]			words;
+	private final boolean			logSpace;
+	private final ExecutorService	executor;
+	private final int				beamSize;
+	private final double			threshold;
+	private final AtomicLong		pruned;
 
 	/**
 	 * Parameterized constructor
 	 *
 	 * @param grammar
-	 *            Grammar definition of rules
+	 *            Grammar compiled into lookup tables
 	 * @param words
 	 *            Words to get the parse tree for
 	 */
-	public CKYParser(final List<Rule> grammar, final String[] words) {
+	public CKYParser(final Grammar grammar, final String[] words) {
+		this(grammar, words, false);
+	}
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 * @param words
+	 *            Words to get the parse tree for
+	 * @param logSpace
+	 *            True to score the chart with log probabilities, so that long sentences do not underflow
+	 */
+	public CKYParser(final Grammar grammar, final String[] words, final boolean logSpace) {
+		this(grammar, words, logSpace, 0, 0.0, null);
+	}
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param grammar
+	 *            Grammar compiled into lookup tables
+	 * @param words
+	 *            Words to get the parse tree for
+	 * @param logSpace
+	 *            True to score the chart with log probabilities, so that long sentences do not underflow
+	 * @param beamSize
+	 *            Number of best heads to keep in each cell, 0 to keep all
+	 * @param threshold
+	 *            Lowest probability of a head relative to the best head in its cell to keep, 0 to keep all
+	 * @param executor
+	 *            Executor to fill the cells of a span length concurrently, or null to fill the chart on the calling thread
+	 */
+	public CKYParser(final Grammar grammar,
+			final String[] words,
+			final boolean logSpace,
+			final int beamSize,
+			final double threshold,
+			final ExecutorService executor) {
 		this.grammar = grammar;
 		this.words = words;
-		this.probs = new ProbabilityMatrix();
-		this.backs = new BackpointerMatrix();
+		this.logSpace = logSpace;
+		this.beamSize = beamSize;
+		this.threshold = threshold;
+		this.executor = executor;
+		this.pruned = new AtomicLong();
+		this.chart = new Chart(words.length, grammar.getSymbolCount(), logSpace ? Double.NEGATIVE_INFINITY : 0.0);
+	}
+
+	/**
+	 * Get the chart
+	 *
+	 * @return Chart of probabilities and backpointers
+	 */
+	public Chart getChart() {
+		return this.chart;
+	}
+
+	/**
+	 * Get number of heads removed from cells by the beam and threshold
+	 *
+	 * @return Number of candidates pruned
+	 */
+	public long getPrunedCount() {
+		return this.pruned.get();
 	}
 
 	/**
-	 * Get probability table
+	 * Check if the start symbol spans the whole sentence
 	 *
-	 * @return Probability table
+	 * @return True if the grammar recognizes the sentence
 	 */
-	public ProbabilityMatrix getProb() {
-		return this.probs;
+	public boolean isRecognized() {
+		return this.chart.getScore(0, this.words.length, this.grammar.getSymbolId(START)) != this.chart.getNone();
+	}
+
+	/**
+	 * Get probability of the start symbol spanning the whole sentence
+	 *
+	 * @return Sentence probability, 0 if the sentence is not recognized or the probability underflows
+	 */
+	public double getSentenceProb() {
+		final double score = this.chart.getScore(0, this.words.length, this.grammar.getSymbolId(START));
+		return this.logSpace ? Math.exp(score) : score;
+	}
+
+	/**
+	 * Get natural logarithm of the probability of the start symbol spanning the whole sentence
+	 *
+	 * @return Sentence log probability, negative infinity if the sentence is not recognized
+	 */
+	public double getSentenceLogProb() {
+		final double score = this.chart.getScore(0, this.words.length, this.grammar.getSymbolId(START));
+		return this.logSpace ? score : Math.log(score);
 	}
 
 	/**
 	 * Run CKY parser
 	 *
-	 * @return Parse tree for the words
+	 * @return Parse tree for the words, null if the sentence is not recognized
 	 */
 	public String parse() {
-		// Update probability matrix for each word in a bottom up fashion
-		int col = 0;
-		for (final String word : this.words) {
-			col++;
+		// Set probability when rules directly produce each word
+		this.fillSpans(1);
 
-			// Set probability when rules directly produce the word
-			for (final Rule rule : this.getRules(word.toLowerCase())) {
-				// If we can directly produce, set probability of head in the rule and backpointers point to null
-				this.probs.setProbInMatrix(col - 1, col, rule.getHead(), rule.getProb());
-				this.backs.setPointersInMatrix(col - 1, col, rule.getHead(), null, null, null);
+		// Update probability matrix for longer spans in a bottom up fashion, since a span only depends on the shorter spans in it
+		for (int span = 2; span <= this.words.length; span++) {
+			this.fillSpans(span);
+		}
 
-				// Add unary rules
-				this.addUnaryRules(col - 1, col);
-			}
+		// Return tree once backpointers are updated
+		if (!this.isRecognized()) {
+			return null;
+		}
 
-			// Create a new tree if two existing sub-trees join and a rule for them exists
-			for (int row = col - 2; row >= -1; row--) {
-				for (int mid = row + 1; mid <= col; mid++) {
-					for (final String head1 : this.getPositiveRuleHeads(row, mid)) {
-						for (final String head2 : this.getPositiveRuleHeads(mid, col)) {
-							for (final Rule rule : this.getRules(head1, head2)) {
-								// Get overall probability as rule multiplied by sub-tree probability
-								double prob = rule.getProb();
-								prob *= this.probs.getProbInMatrix(row, mid, head1);
-								prob *= this.probs.getProbInMatrix(mid, col, head2);
-
-								// Set probability to the higher value and update backpointer
-								if (prob > this.probs.getProbInMatrix(row, col, rule.getHead())) {
-									this.probs.setProbInMatrix(row, col, rule.getHead(), prob);
-									this.backs.setPointersInMatrix(row, col, rule.getHead(), String.valueOf(mid), head1, head2);
-								}
-							}
-						}
-					}
-				}
+		return this.getTree(0, this.words.length, this.grammar.getSymbolId(START));
+	}
 
-				// Add unary rules
-				this.addUnaryRules(row, col);
+	/**
+	 * Fill all cells of a span length, concurrently if the parser has an executor
+	 *
+	 * @param span
+	 *            Number of words the cells span
+	 */
+	private void fillSpans(final int span) {
+		// Fill the cells on this thread if there is no executor
+		if (this.executor == null) {
+			for (int row = 0; row + span <= this.words.length; row++) {
+				this.fillCell(row, row + span);
 			}
+
+			return;
 		}
 
-		// Return tree once backpointers are updated
-		return this.getTree(0, this.words.length, "s");
+		// Else, each cell is independent of the other cells of the same span, so fill them as separate tasks
+		final List<Callable<Void>> tasks = new ArrayList<>();
+		for (int row = 0; row + span <= this.words.length; row++) {
+			final int cellRow = row;
+			tasks.add(() -> {
+				this.fillCell(cellRow, cellRow + span);
+				return null;
+			});
+		}
+
+		// Wait for all cells to be filled before moving on to longer spans
+		try {
+			for (final Future<Void> future : this.executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while filling spans of length " + span, e);
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Unable to fill spans of length " + span + ": " + e.getCause().getMessage(), e.getCause());
+		}
 	}
 
 	/**
-	 * Process a chain of unary rules
+	 * Fill a cell of the chart from the cells of the shorter spans in it
 	 *
 	 * @param row
 	 *            Row number in matrix
 	 * @param col
 	 *            Column number in matrix
 	 */
-	private void addUnaryRules(final int row, final int col) {
-		// Get two queues, one for rules we have seen and another for all heads in this row, col
-		final Queue<Rule> visitedRules = new LinkedList<>();
-		final Queue<String> queue = new LinkedList<>();
-		queue.addAll(this.probs.getHeads(row, col));
-
-		// Do till we process all the heads
-		while (!queue.isEmpty()) {
-			final String head = queue.poll();
-
-			// Queue unseen rules that led to this symbol
-			for (final Rule rule : this.getRules(head)) {
-				if (!visitedRules.contains(rule)) {
-					visitedRules.add(rule);
-					queue.add(rule.getHead());
-
-					// Combine chain rules by property of transivity
-					final double prob = rule.getProb() * this.probs.getProbInMatrix(row, col, head);
-					if (prob > this.probs.getProbInMatrix(row, col, rule.getHead())) {
-						this.probs.setProbInMatrix(row, col, rule.getHead(), prob);
-						this.backs.setPointersInMatrix(row, col, rule.getHead(), null, head, null);
+	private void fillCell(final int row, final int col) {
+		if (col - row == 1) {
+			// Set probability when rules directly produce the word
+			for (final Rule rule : this.grammar.getLexicalRules(this.words[row].toLowerCase())) {
+				// If we can directly produce, set probability of head in the rule and backpointers point to nothing. Lowercasing can give a
+				// head several rules for the word, so keep the most probable one
+				final double prob = this.score(rule);
+				if (prob > this.chart.getScore(row, col, rule.getHeadId())) {
+					this.chart.setScore(row, col, rule.getHeadId(), prob, -1, -1, -1);
+				}
+			}
+		}
+
+		// Create a new tree if two existing sub-trees join and a rule for them exists
+		for (int mid = row + 1; mid < col; mid++) {
+			final int leftHeads = this.chart.getHeadCount(row, mid);
+			for (int i = 0; i < leftHeads; i++) {
+				final int head1 = this.chart.getHead(row, mid, i);
+				final double prob1 = this.chart.getScore(row, mid, head1);
+				for (final Rule rule : this.grammar.getBinaryRules(head1)) {
+					// Skip rules whose right child is not in the right sub-tree
+					final int head2 = rule.getSymbolIds()[1];
+					final double prob2 = this.chart.getScore(mid, col, head2);
+					if (prob2 == this.chart.getNone()) {
+						continue;
+					}
+
+					// Get overall probability as rule multiplied by sub-tree probability, or the sum of them in log space
+					final double prob = this.combine(this.combine(this.score(rule), prob1), prob2);
+
+					// Set probability to the higher value and update backpointer
+					if (prob > this.chart.getScore(row, col, rule.getHeadId())) {
+						this.chart.setScore(row, col, rule.getHeadId(), prob, mid, head1, head2);
 					}
 				}
 			}
 		}
+
+		// Add unary rules
+		this.addUnaryRules(row, col);
+
+		// Remove heads that are unlikely to be part of the best tree
+		this.prune(row, col);
 	}
 
 	/**
-	 * Get heads of all rules that have a positive probability
+	 * Prune the heads of a cell that fall outside the beam or below the threshold relative to the best head
 	 *
 	 * @param row
-	 *            Row of probability table
+	 *            Row number in matrix
 	 * @param col
-	 *            Column for probability table
-	 * @return List of heads
-	 */
-	private List<String> getPositiveRuleHeads(final int row, final int col) {
-		final List<String> heads = new ArrayList<>();
-		for (final String head : this.probs.getHeads(row, col)) {
-			if (this.probs.getProbInMatrix(row, col, head) > 0.0) {
-				heads.add(head);
-			}
+	 *            Column number in matrix
+	 */
+	private void prune(final int row, final int col) {
+		final int count = this.chart.getHeadCount(row, col);
+		if (count == 0 || this.threshold <= 0.0 && (this.beamSize <= 0 || count <= this.beamSize)) {
+			return;
+		}
+
+		// Sort the scores in this cell to get the best and the one at the edge of the beam
+		final double[] scores = new double[count];
+		for (int i = 0; i < count; i++) {
+			scores[i] = this.chart.getScore(row, col, this.chart.getHead(row, col, i));
+		}
+
+		Arrays.sort(scores);
+		double cutoff = this.chart.getNone();
+		if (this.beamSize > 0 && count > this.beamSize) {
+			cutoff = scores[count - this.beamSize];
 		}
 
-		return heads;
+		if (this.threshold > 0.0) {
+			final double best = scores[count - 1];
+			cutoff = Math.max(cutoff, this.logSpace ? best + Math.log(this.threshold) : best * this.threshold);
+		}
+
+		this.pruned.addAndGet(this.chart.prune(row, col, cutoff));
 	}
 
 	/**
-	 * Get all rules that produce the given symbols
+	 * Apply the best chain of unary rules from each head in a cell, using the unary closure precomputed by the grammar
 	 *
-	 * @param symbols
-	 *            Given symbols
-	 * @return List of {@link Rule}
+	 * @param row
+	 *            Row number in matrix
+	 * @param col
+	 *            Column number in matrix
 	 */
-	private List<Rule> getRules(final String... symbols) {
-		final List<Rule> rules = new ArrayList<>();
-		for (final Rule rule : this.grammar) {
-			if (Util.compareArray(rule.getSymbols(), symbols)) {
-				rules.add(rule);
+	private void addUnaryRules(final int row, final int col) {
+		// Take the heads produced by lexical and binary rules before any chain is applied
+		final int count = this.chart.getHeadCount(row, col);
+		final int[] children = new int[count];
+		final double[] scores = new double[count];
+		for (int i = 0; i < count; i++) {
+			children[i] = this.chart.getHead(row, col, i);
+			scores[i] = this.chart.getScore(row, col, children[i]);
+		}
+
+		// Combine each head with the best chain to every head reachable from it, pointing back to the chain taken
+		for (int i = 0; i < count; i++) {
+			final UnaryClosure closure = this.grammar.getUnaryClosure(children[i]);
+			for (int j = 0; j < closure.size(); j++) {
+				final double prob = this.combine(this.logSpace ? closure.getLogProb(j) : closure.getProb(j), scores[i]);
+				if (prob > this.chart.getScore(row, col, closure.getHead(j))) {
+					this.chart.setScore(row, col, closure.getHead(j), prob, -1, children[i], j);
+				}
 			}
 		}
+	}
+
+	/**
+	 * Get the score of a rule in the space the chart is scored in
+	 *
+	 * @param rule
+	 *            Rule to score
+	 * @return Probability or log probability of the rule
+	 */
+	private double score(final Rule rule) {
+		return this.logSpace ? rule.getLogProb() : rule.getProb();
+	}
 
-		return rules;
+	/**
+	 * Combine two scores, multiplying probabilities or adding log probabilities
+	 *
+	 * @param score1
+	 *            First score
+	 * @param score2
+	 *            Second score
+	 * @return Combined score
+	 */
+	private double combine(final double score1, final double score2) {
+		return this.logSpace ? score1 + score2 : score1 * score2;
 	}
 
 	/**
-	 * Get the parse tree from the backpointers table
+	 * Get the parse tree from the backpointers in the chart
 	 *
 	 * @param row
-	 *            Row for the backpointers table
+	 *            Row for the chart
 	 * @param col
-	 *            Column for the backpointers table
+	 *            Column for the chart
 	 * @param symbol
-	 *            Symbol in that row and column
+	 *            Id of the symbol in that row and column
 	 * @return Parse tree as a string
 	 */
-	private String getTree(final int row, final int col, final String symbol) {
-		final Pointers pointers = this.backs.getPointersInMatrix(row, col, symbol);
+	private String getTree(final int row, final int col, final int symbol) {
+		final String label = this.grammar.getSymbol(symbol).toUpperCase();
+		final int left = this.chart.getLeft(row, col, symbol);
+		final int mid = this.chart.getMid(row, col, symbol);
+
 		// If it is a terminal, display the symbol and the word
-		if (pointers == null || pointers.getMid() == null && pointers.getHead1() == null && pointers.getHead2() == null) {
-			return "(" + symbol.toUpperCase() + " " + this.words[row] + ")";
-		} else if (pointers.getMid() == null && pointers.getHead2() == null) {
-			// Else, if it is a case of chain of unary rules, recurse through the chain and get the tree
-			final String tree = this.getTree(row, col, pointers.getHead1());
-			return "(" + symbol.toUpperCase() + " " + tree + ")";
+		if (left < 0) {
+			return "(" + label + " " + this.words[row] + ")";
+		} else if (mid < 0) {
+			// Else, if it is a case of chain of unary rules, wrap the tree of the child in each symbol of the chain
+			final int[] chain = this.grammar.getUnaryClosure(left).getChain(this.chart.getRight(row, col, symbol));
+			final StringBuilder tree = new StringBuilder("(" + label + " ");
+			for (final int link : chain) {
+				tree.append("(").append(this.grammar.getSymbol(link).toUpperCase()).append(" ");
+			}
+
+			tree.append(this.getTree(row, col, left));
+			for (int i = 0; i <= chain.length; i++) {
+				tree.append(")");
+			}
+
+			return tree.toString();
 		} else {
 			// Else, recurse through all the non terminals and get trees for each
-			final String tree1 = this.getTree(row, Integer.parseInt(pointers.getMid()), pointers.getHead1());
-			final String tree2 = this.getTree(Integer.parseInt(pointers.getMid()), col, pointers.getHead2());
-			return "(" + symbol.toUpperCase() + " " + tree1 + " " + tree2 + ")";
+			final String tree1 = this.getTree(row, mid, left);
+			final String tree2 = this.getTree(mid, col, this.chart.getRight(row, col, symbol));
+			return "(" + label + " " + tree1 + " " + tree2 + ")";
 		}
 	}
 }
\ No newline at end of file
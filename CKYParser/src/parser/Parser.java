@@ -7,10 +7,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import helpers.Grammar;
 import helpers.Rule;
+import util.Tokenizer;
 
 /**
  * Class to parse grammar into lexical rules
@@ -18,41 +18,48 @@ import helpers.Rule;
  * @author Ekal.Golas
  */
 public class Parser {
-	public static List<Rule> parse(final File file) throws FileNotFoundException, IOException {
-		// Get a list for rules and a pattern to match rule definition substrings
+	/**
+	 * Parses the grammar file and compiles the rules into a {@link Grammar}. Files compiled by {@link BinaryGrammar} are loaded without parsing
+	 *
+	 * @param file
+	 *            Grammar file
+	 * @return Compiled grammar
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	public static Grammar parse(final File file) throws FileNotFoundException, IOException {
+		if (BinaryGrammar.isBinary(file)) {
+			return BinaryGrammar.read(file);
+		}
+
+		// Get a list for rules and a tokenizer to find the rule of each line
 		final List<Rule> rules = new ArrayList<>();
-		final Pattern pattern = Pattern.compile("(.*\\[.+\\])");
+		final Tokenizer tokenizer = new Tokenizer();
 
 		// Read the grammar file line by line
 		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
 			String line = "";
 			while ((line = reader.readLine()) != null) {
-				// Match and get rule for each line
-				final Matcher matcher = pattern.matcher(line);
-				if (matcher.find()) {
-					final String match = matcher.group().trim();
-					String text = match.replaceAll("[\\[^\\]']", "");
-					text = text.replace("->", "");
-					text = text.replaceAll("\\s+", " ");
-
-					final String[] split = text.split(" ");
+				// Get rule for each line that has one
+				if (tokenizer.tokenizeRule(line)) {
+					final int count = tokenizer.getCount();
 					final Rule rule = new Rule();
-					rule.setHead(split[0].toLowerCase());
-					rule.setProb(Double.parseDouble(split[split.length - 1]));
+					rule.setHead(tokenizer.getToken(0));
+					rule.setProb(tokenizer.getDouble(count - 1));
 
-					final int len = split.length - 2;
-					final String[] symbols = new String[len];
+					final String[] symbols = new String[count - 2];
 					for (int i = 0; i < symbols.length; i++) {
-						symbols[i] = split[1 + i].toLowerCase();
+						symbols[i] = tokenizer.getToken(1 + i);
 					}
 
 					rule.setSymbols(symbols);
+					rule.setLexical(tokenizer.isQuoted());
 					rules.add(rule);
 				}
 			}
 		}
 
-		// Return the parsed rules
-		return rules;
+		// Return the rules indexed for lookup
+		return new Grammar(rules);
 	}
 }
\ No newline at end of file
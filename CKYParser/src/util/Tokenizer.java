@@ -0,0 +1,171 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Tokenizer for the rule lines of a grammar file, that finds the rule and splits it into lower case tokens in one pass over the characters of
+ * the line. The rule is the line up to the last bracketed probability, with brackets, carets, quotes and arrows removed and tokens separated
+ * by white space. The tokens are spans of a buffer that is reused for each line, so strings are only made for the tokens asked for
+ *
+ * @author Ekal.Golas
+ */
+public class Tokenizer {
+	private char[]	chars;
+	private int[]	starts;
+	private int[]	lengths;
+	private int		count;
+	private boolean	quoted;
+
+	/**
+	 * Default constructor
+	 */
+	public Tokenizer() {
+		this.chars = new char[256];
+		this.starts = new int[16];
+		this.lengths = new int[16];
+	}
+
+	/**
+	 * Find the rule in a line and split it into tokens, replacing the tokens of the previous line
+	 *
+	 * @param line
+	 *            Line of the grammar file
+	 * @return True if the line has a rule, with the head, the symbols and the probability as its tokens
+	 */
+	public boolean tokenizeRule(final CharSequence line) {
+		this.count = 0;
+		this.quoted = false;
+
+		// The rule ends with the last closing bracket that has an opening bracket and something between them before it
+		final int open = indexOf(line, '[');
+		int end = line.length() - 1;
+		while (open >= 0 && end > open + 1 && line.charAt(end) != ']') {
+			end--;
+		}
+		if (open < 0 || end <= open + 1) {
+			return false;
+		}
+
+		if (end >= this.chars.length) {
+			this.chars = new char[Math.max(end + 1, this.chars.length * 2)];
+		}
+
+		int size = 0;
+		int start = 0;
+		int arrow = 0;
+		boolean started = false;
+		for (int i = 0; i <= end; i++) {
+			final char c = line.charAt(i);
+			if (isWhitespace(c)) {
+				// White space ends the token before it. A first token left empty by the characters removed from it is kept, as the head
+				if (size > start || started && this.count == 0) {
+					this.addToken(start, size);
+				}
+
+				start = size;
+				continue;
+			}
+
+			started = true;
+			if (c == '\'') {
+				this.quoted = true;
+			} else if (c == '>' && size > Math.max(start, arrow) && this.chars[size - 1] == '-') {
+				// Drop the arrow, and do not pair the characters before it with another
+				size--;
+				arrow = size;
+			} else if (c != '[' && c != ']' && c != '^') {
+				this.chars[size++] = Character.toLowerCase(c);
+			}
+		}
+
+		if (size > start) {
+			this.addToken(start, size);
+		}
+
+		return this.count > 0;
+	}
+
+	/**
+	 * @return the number of tokens of the last rule
+	 */
+	public final int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return true if the last rule has quotes, which mark a lexical rule
+	 */
+	public final boolean isQuoted() {
+		return this.quoted;
+	}
+
+	/**
+	 * Get a token as a string
+	 *
+	 * @param token
+	 *            Index of the token
+	 * @return Token in lower case
+	 */
+	public String getToken(final int token) {
+		return new String(this.chars, this.starts[token], this.lengths[token]);
+	}
+
+	/**
+	 * Get a token as a number
+	 *
+	 * @param token
+	 *            Index of the token
+	 * @return Value of the token
+	 */
+	public double getDouble(final int token) {
+		return Double.parseDouble(this.getToken(token));
+	}
+
+	/**
+	 * Add a token
+	 *
+	 * @param start
+	 *            Index of the first character of the token
+	 * @param end
+	 *            Index after the last character of the token
+	 */
+	private void addToken(final int start, final int end) {
+		if (this.count == this.starts.length) {
+			this.starts = Arrays.copyOf(this.starts, this.count * 2);
+			this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+		}
+
+		this.starts[this.count] = start;
+		this.lengths[this.count++] = end - start;
+	}
+
+	/**
+	 * Check if a character is white space, the characters matched by \s in a regular expression
+	 *
+	 * @param c
+	 *            Character
+	 * @return True for spaces, tabs, line breaks, vertical tabs and form feeds
+	 */
+	private static boolean isWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Find the first occurrence of a character
+	 *
+	 * @param line
+	 *            Line to search
+	 * @param c
+	 *            Character to find
+	 * @return Index of the character, -1 if it is not in the line
+	 */
+	private static int indexOf(final CharSequence line, final char c) {
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == c) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
\ No newline at end of file
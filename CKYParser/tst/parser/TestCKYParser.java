@@ -0,0 +1,50 @@
+package parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import helpers.Grammar;
+
+/**
+ * Test the parses and probabilities of sentences under the grammar of the project
+ *
+ * @author Ekal.Golas
+ */
+public class TestCKYParser {
+	private static final String	SENTENCE	= "The company said it expects profit";
+	private static final String	TREE		= "(S (NP-SBJ (DT The) (NN company)) (VP (VBD said) (S (NP-SBJ (PRP it)) (VP (VBZ expects) (NP (NN profit))))))";
+	private static final double	PROBABILITY	= 3.4982349019088185E-16;
+	private static Grammar		grammar;
+
+	/**
+	 * Parse the grammar, run from the directory of the project
+	 */
+	@BeforeClass
+	public static void setup() throws IOException {
+		grammar = Parser.parse(new File("data/grammar.pcfg"));
+	}
+
+	/**
+	 * Words whose lowercasing gives a head several rules for them, like 'The' and 'the' for DT, get the most probable of those rules
+	 */
+	@Test
+	public final void testDuplicateLexicalRules() {
+		final CKYParser parser = new CKYParser(grammar, SENTENCE.split(" "));
+		Assert.assertEquals("Parse tree", TREE, parser.parse());
+		Assert.assertEquals("Sentence probability", PROBABILITY, parser.getSentenceProb(), PROBABILITY * 1e-9);
+	}
+
+	/**
+	 * Scoring in log space gives the same probability
+	 */
+	@Test
+	public final void testDuplicateLexicalRulesInLogSpace() {
+		final CKYParser parser = new CKYParser(grammar, SENTENCE.split(" "), true);
+		Assert.assertEquals("Parse tree", TREE, parser.parse());
+		Assert.assertEquals("Sentence log probability", Math.log(PROBABILITY), parser.getSentenceLogProb(), 1e-9);
+	}
+}
@@ -0,0 +1,116 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class to decode a stream of observation sequences with one model on a pool of workers, writing the most likely states of each sequence in
+ * input order
+ *
+ * @author Ekal.Golas
+ */
+public class BatchDecoder {
+	private final Viterbi			viterbi;
+	private final ExecutorService	executor;
+	private final int				window;
+	private int						count;
+	private long					observations;
+	private long					elapsed;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param viterbi
+	 *            Decoder over the loaded model
+	 * @param executor
+	 *            Executor to decode the sequences on
+	 * @param window
+	 *            Maximum number of sequences being decoded or waiting to be written at a time
+	 */
+	public BatchDecoder(final Viterbi viterbi, final ExecutorService executor, final int window) {
+		this.viterbi = viterbi;
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Decode each line of the reader as a sequence of observation symbols separated by white space, and write the most likely states of each
+	 * in input order, separated by spaces
+	 *
+	 * @param reader
+	 *            Reader with a sequence on each line
+	 * @param out
+	 *            Stream to write the states to
+	 * @throws IOException
+	 */
+	public void decode(final BufferedReader reader, final PrintStream out) throws IOException {
+		final long start = System.nanoTime();
+		final Queue<Future<String[]>> pending = new ArrayDeque<>();
+
+		// Submit each sequence, writing the oldest one once too many are pending
+		for (String line; (line = reader.readLine()) != null;) {
+			final String trimmed = line.trim();
+			final String[] sequence = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+			this.observations += sequence.length;
+			pending.add(this.executor.submit(() -> this.viterbi.decode(sequence)));
+			if (pending.size() >= this.window) {
+				this.write(out, this.take(pending));
+			}
+		}
+
+		// Write the rest of the sequences
+		while (!pending.isEmpty()) {
+			this.write(out, this.take(pending));
+		}
+
+		this.elapsed = System.nanoTime() - start;
+	}
+
+	/**
+	 * Write the states of a sequence
+	 *
+	 * @param out
+	 *            Stream to write to
+	 * @param states
+	 *            Most likely state at each observation
+	 */
+	private void write(final PrintStream out, final String[] states) {
+		this.count++;
+		out.println(String.join(" ", states));
+	}
+
+	/**
+	 * Wait for the oldest pending sequence
+	 *
+	 * @param pending
+	 *            Sequences in input order
+	 * @return States of the oldest sequence
+	 * @throws IOException
+	 */
+	private String[] take(final Queue<Future<String[]>> pending) throws IOException {
+		try {
+			return pending.poll().get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to decode: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * Print the number of sequences and observations decoded, and the throughput
+	 *
+	 * @param out
+	 *            Stream to print to
+	 */
+	public void printStatistics(final PrintStream out) {
+		out.println("Sequences decoded: " + this.count);
+		out.println("Observations decoded: " + this.observations);
+		out.println("Throughput: " + String.format("%.2f", this.observations / (this.elapsed / 1e9)) + " observations/sec");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,260 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Baum-Welch re-estimation of a {@link CompiledHMM} from unlabeled observation sequences. In each iteration the sequences are split into one
+ * slice for each thread, the expected counts of each slice are accumulated on its own, and the accumulators are merged in slice order before
+ * the probabilities are estimated from them again
+ *
+ * @author Ekal.Golas
+ */
+public class BaumWelch {
+	private final ExecutorService	executor;
+	private final int				threads;
+	private final PrintStream		log;
+
+	/**
+	 * Expected counts of a slice of the sequences
+	 */
+	private static class Accumulator {
+		private final double[]		initial;
+		private final double[][]	transitions;
+		private final double[][]	emissions;
+		private double				logLikelihood;
+		private int					skipped;
+
+		/**
+		 * Constructor
+		 *
+		 * @param n
+		 *            Number of states
+		 * @param m
+		 *            Number of symbols
+		 */
+		private Accumulator(final int n, final int m) {
+			this.initial = new double[n];
+			this.transitions = new double[n][n];
+			this.emissions = new double[n][m];
+		}
+
+		/**
+		 * Add the counts of another accumulator to this one
+		 *
+		 * @param other
+		 *            Accumulator to add
+		 */
+		private void merge(final Accumulator other) {
+			for (int state = 0; state < this.initial.length; state++) {
+				this.initial[state] += other.initial[state];
+				for (int next = 0; next < this.initial.length; next++) {
+					this.transitions[state][next] += other.transitions[state][next];
+				}
+				for (int symbol = 0; symbol < this.emissions[state].length; symbol++) {
+					this.emissions[state][symbol] += other.emissions[state][symbol];
+				}
+			}
+
+			this.logLikelihood += other.logLikelihood;
+			this.skipped += other.skipped;
+		}
+	}
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param executor
+	 *            Executor to run the expectation step on
+	 * @param threads
+	 *            Number of slices to split the sequences into
+	 * @param log
+	 *            Stream to log the progress of each iteration to, null for none
+	 */
+	public BaumWelch(final ExecutorService executor, final int threads, final PrintStream log) {
+		this.executor = executor;
+		this.threads = threads;
+		this.log = log;
+	}
+
+	/**
+	 * Re-estimate a model until the log likelihood of the sequences stops improving, or for a number of iterations
+	 *
+	 * @param model
+	 *            Model to start from, which also sets the states and symbols
+	 * @param sequences
+	 *            Id of each observation symbol of each sequence, -1 for a symbol the model does not emit
+	 * @param iterations
+	 *            Highest number of iterations
+	 * @param tolerance
+	 *            Change in the log likelihood, relative to it, below which the model has converged
+	 * @return Re-estimated model
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public CompiledHMM train(final CompiledHMM model, final List<int[]> sequences, final int iterations, final double tolerance)
+			throws InterruptedException, ExecutionException {
+		CompiledHMM current = model;
+		double previous = Double.NEGATIVE_INFINITY;
+		for (int iteration = 1; iteration <= iterations; iteration++) {
+			final long start = System.nanoTime();
+			final Accumulator accumulator = this.expect(current, sequences);
+			current = maximize(current, accumulator);
+
+			// Log the likelihood of the model the counts were taken with, and stop once it no longer improves
+			final double change = accumulator.logLikelihood - previous;
+			if (this.log != null) {
+				this.log.println(String.format("Iteration %d: log likelihood %.4f, change %.4f, %d sequences skipped, %.1f ms", iteration,
+						accumulator.logLikelihood, change, accumulator.skipped, (System.nanoTime() - start) / 1e6));
+			}
+			if (Math.abs(change) <= tolerance * Math.abs(accumulator.logLikelihood)) {
+				break;
+			}
+
+			previous = accumulator.logLikelihood;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Accumulate the expected counts of the sequences under a model, one slice of the sequences on each thread
+	 *
+	 * @param model
+	 *            Current model
+	 * @param sequences
+	 *            Observation sequences
+	 * @return Merged expected counts
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	private Accumulator expect(final CompiledHMM model, final List<int[]> sequences) throws InterruptedException, ExecutionException {
+		final ForwardBackward forwardBackward = new ForwardBackward(model);
+		final List<Future<Accumulator>> slices = new ArrayList<>();
+		final int size = (sequences.size() + this.threads - 1) / this.threads;
+		for (int from = 0; from < sequences.size(); from += size) {
+			final List<int[]> slice = sequences.subList(from, Math.min(from + size, sequences.size()));
+			slices.add(this.executor.submit(() -> {
+				final Accumulator accumulator = new Accumulator(model.getStateCount(), model.getSymbolCount());
+				for (final int[] observations : slice) {
+					accumulate(forwardBackward, observations, accumulator);
+				}
+
+				return accumulator;
+			}));
+		}
+
+		// Merge in slice order, so that the sums do not depend on which slice finishes first
+		final Accumulator merged = new Accumulator(model.getStateCount(), model.getSymbolCount());
+		for (final Future<Accumulator> slice : slices) {
+			merged.merge(slice.get());
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Add the expected counts of a sequence
+	 *
+	 * @param forwardBackward
+	 *            Passes over the current model
+	 * @param observations
+	 *            Observation sequence
+	 * @param accumulator
+	 *            Accumulator to add to
+	 */
+	private static void accumulate(final ForwardBackward forwardBackward, final int[] observations, final Accumulator accumulator) {
+		final int n = accumulator.initial.length;
+		final int length = observations.length;
+		final double[][] alpha = new double[length][n];
+		final double[][] beta = new double[length][n];
+		final double[] scales = new double[length];
+		final double logLikelihood = forwardBackward.forward(observations, alpha, scales);
+		if (length == 0 || Double.isInfinite(logLikelihood)) {
+			// No path of the model emits the sequence, so it has nothing to count
+			accumulator.skipped++;
+			return;
+		}
+
+		forwardBackward.backward(observations, scales, beta);
+		accumulator.logLikelihood += logLikelihood;
+		final double[][] transitions = forwardBackward.getTransitions();
+		for (int t = 0; t < length; t++) {
+			for (int state = 0; state < n; state++) {
+				// Probability of being in the state at this observation
+				final double gamma = alpha[t][state] * beta[t][state];
+				if (t == 0) {
+					accumulator.initial[state] += gamma;
+				}
+				if (observations[t] >= 0) {
+					accumulator.emissions[state][observations[t]] += gamma;
+				}
+
+				// Probability of moving from the state to each state after this observation
+				if (t < length - 1) {
+					for (int next = 0; next < n; next++) {
+						accumulator.transitions[state][next] += alpha[t][state] * transitions[state][next]
+								* forwardBackward.emission(next, observations[t + 1]) * beta[t + 1][next] / scales[t + 1];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Estimate the probabilities from the expected counts. A state with no expected count keeps its probabilities
+	 *
+	 * @param model
+	 *            Model the counts were taken with
+	 * @param accumulator
+	 *            Merged expected counts
+	 * @return Re-estimated model
+	 */
+	private static CompiledHMM maximize(final CompiledHMM model, final Accumulator accumulator) {
+		final int n = model.getStateCount();
+		final String[] states = new String[n];
+		for (int state = 0; state < n; state++) {
+			states[state] = model.getState(state);
+		}
+
+		final String[] symbols = new String[model.getSymbolCount()];
+		for (int symbol = 0; symbol < symbols.length; symbol++) {
+			symbols[symbol] = model.getSymbol(symbol);
+		}
+
+		final double[] initial = normalize(accumulator.initial, model.getInitial());
+		final double[][] transitions = new double[n][];
+		final double[][] emissions = new double[n][];
+		for (int state = 0; state < n; state++) {
+			transitions[state] = normalize(accumulator.transitions[state], model.getTransitions()[state]);
+			emissions[state] = normalize(accumulator.emissions[state], model.getEmissions()[state]);
+		}
+
+		return new CompiledHMM(states, symbols, initial, transitions, emissions);
+	}
+
+	/**
+	 * Divide counts by their sum
+	 *
+	 * @param counts
+	 *            Expected counts
+	 * @param logs
+	 *            Log probabilities to keep if the counts sum to 0
+	 * @return Probabilities
+	 */
+	private static double[] normalize(final double[] counts, final double[] logs) {
+		double sum = 0;
+		for (final double count : counts) {
+			sum += count;
+		}
+
+		final double[] probabilities = new double[counts.length];
+		for (int i = 0; i < probabilities.length; i++) {
+			probabilities[i] = sum > 0 ? counts[i] / sum : Math.exp(logs[i]);
+		}
+
+		return probabilities;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks for running the Viterbi algorithm over observation sequences of increasing length, to measure performance changes against
+ *
+ * @author Ekal.Golas
+ */
+public class Benchmark {
+	private final int	warmup;
+	private final int	iterations;
+	private int			sink;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param warmup
+	 *            Number of untimed runs of each benchmark, so that the JIT compiles the code being measured
+	 * @param iterations
+	 *            Number of timed runs of each benchmark
+	 */
+	public Benchmark(final int warmup, final int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Main function
+	 *
+	 * @param args
+	 *            Command line arguments: optionally the number of warmup and timed runs
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		final Benchmark benchmark = new Benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 3, args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+		// Predicting for random sequences of ice creams eaten, with a fixed seed so that runs are comparable
+		final HMM hmm = HMM.setup();
+		final Viterbi viterbi = new Viterbi(hmm.compile());
+		final Random random = new Random(6320);
+		for (int length = 1000; length <= 10000000; length *= 10) {
+			final char[] observations = new char[length];
+			final int[] ids = new int[length];
+			for (int i = 0; i < length; i++) {
+				ids[i] = random.nextInt(3);
+				observations[i] = (char) ('1' + ids[i]);
+			}
+
+			// The map based decoder is only measured up to a million observations, as it takes too long beyond
+			if (length <= 1000000) {
+				benchmark.measure("HMM.predict " + length + " observations", () -> hmm.predict(observations));
+			}
+			benchmark.measure("Viterbi.decode " + length + " observations", () -> viterbi.decode(ids));
+		}
+
+		// Decoding with a large set of states, each of which can only move to a few others
+		final CompiledHMM sparse = sparseModel(random, 1000, 10, 100);
+		final int[] ids = new int[10000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = random.nextInt(100);
+		}
+
+		final Viterbi exact = new Viterbi(sparse);
+		final Viterbi beam = new Viterbi(sparse, 32);
+		benchmark.measure("Viterbi.decode 1000 sparse states", () -> exact.decode(ids));
+		benchmark.measure("Viterbi.decode 1000 sparse states beam 32", () -> beam.decode(ids));
+		benchmark.measure("Viterbi.decode 1000 sparse states 5 best", () -> exact.decode(ids, 5));
+	}
+
+	/**
+	 * Create a model with random probabilities, in which each state can only move to a few others
+	 *
+	 * @param random
+	 *            Random number generator
+	 * @param n
+	 *            Number of states
+	 * @param successors
+	 *            Number of states each state can move to
+	 * @param m
+	 *            Number of observation symbols
+	 * @return Model
+	 */
+	private static CompiledHMM sparseModel(final Random random, final int n, final int successors, final int m) {
+		final String[] states = new String[n];
+		final double[] initial = new double[n];
+		final double[][] transitions = new double[n][n];
+		final double[][] emissions = new double[n][m];
+		for (int state = 0; state < n; state++) {
+			states[state] = "S" + state;
+			initial[state] = 1.0 / n;
+			for (int i = 0; i < successors; i++) {
+				transitions[state][random.nextInt(n)] += 1.0 / successors;
+			}
+			for (int symbol = 0; symbol < m; symbol++) {
+				emissions[state][symbol] = 1.0 / m;
+			}
+		}
+
+		final String[] symbols = new String[m];
+		for (int symbol = 0; symbol < m; symbol++) {
+			symbols[symbol] = String.valueOf(symbol);
+		}
+
+		return new CompiledHMM(states, symbols, initial, transitions, emissions);
+	}
+
+	/**
+	 * Run an operation untimed to warm up, then time it and print the average and best time per run
+	 *
+	 * @param name
+	 *            Name of the benchmark
+	 * @param operation
+	 *            Operation to time
+	 * @throws Exception
+	 */
+	public void measure(final String name, final Callable<?> operation) throws Exception {
+		for (int i = 0; i < this.warmup; i++) {
+			this.consume(operation.call());
+		}
+
+		long total = 0;
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < this.iterations; i++) {
+			final long start = System.nanoTime();
+			this.consume(operation.call());
+			final long elapsed = System.nanoTime() - start;
+			total += elapsed;
+			best = Math.min(best, elapsed);
+		}
+
+		System.out.println(String.format("%-50s avg %12.3f ms   best %12.3f ms", name, total / 1e6 / this.iterations, best / 1e6));
+	}
+
+	/**
+	 * Keep the result of an operation alive, so that the JIT cannot remove the work that produced it
+	 *
+	 * @param result
+	 *            Result of the operation
+	 */
+	private void consume(final Object result) {
+		this.sink ^= System.identityHashCode(result);
+	}
+}
\ No newline at end of file
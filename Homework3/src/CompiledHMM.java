@@ -0,0 +1,228 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hidden Markov model compiled to arrays, with states and observation symbols numbered from 0 and probabilities kept as logs, so that decoding
+ * is array reads and additions rather than map lookups and multiplications
+ *
+ * @author Ekal.Golas
+ */
+public class CompiledHMM {
+	private final String[]				states;
+	private final String[]				symbols;
+	private final Map<String, Integer>	symbolIds;
+	private final double[]				initial;
+	private final double[][]			transitions;
+	private final double[][]			emissions;
+	private final int[][]				predecessors;
+	private final int[][]				successors;
+	private final double[][]			predecessorTransitions;
+	private final double[][]			successorTransitions;
+	private final int					transitionCount;
+
+	/**
+	 * Constructor that takes probabilities and keeps their logs, and lists the states each state can be reached from and move to, so that
+	 * decoding with a sparse transition matrix only visits the transitions that are not 0
+	 *
+	 * @param states
+	 *            Name of each state
+	 * @param symbols
+	 *            Name of each observation symbol
+	 * @param initial
+	 *            Probability of starting in each state
+	 * @param transitions
+	 *            Probability of moving from each state to each state, by the state moved from
+	 * @param emissions
+	 *            Probability of each state emitting each symbol, by state
+	 */
+	public CompiledHMM(final String[] states, final String[] symbols, final double[] initial, final double[][] transitions,
+			final double[][] emissions) {
+		this.states = states;
+		this.symbols = symbols;
+		this.symbolIds = new HashMap<>();
+		for (int symbol = 0; symbol < symbols.length; symbol++) {
+			this.symbolIds.put(symbols[symbol], symbol);
+		}
+
+		this.initial = log(initial);
+		this.transitions = new double[states.length][];
+		this.emissions = new double[states.length][];
+		for (int state = 0; state < states.length; state++) {
+			this.transitions[state] = log(transitions[state]);
+			this.emissions[state] = log(emissions[state]);
+		}
+
+		// Count the transitions into and out of each state, then list them and their log probabilities in increasing order of state
+		final int[] into = new int[states.length];
+		final int[] outOf = new int[states.length];
+		int count = 0;
+		for (int state = 0; state < states.length; state++) {
+			for (int next = 0; next < states.length; next++) {
+				if (this.transitions[state][next] > Double.NEGATIVE_INFINITY) {
+					into[next]++;
+					outOf[state]++;
+					count++;
+				}
+			}
+		}
+
+		this.transitionCount = count;
+		this.predecessors = new int[states.length][];
+		this.successors = new int[states.length][];
+		this.predecessorTransitions = new double[states.length][];
+		this.successorTransitions = new double[states.length][];
+		for (int state = 0; state < states.length; state++) {
+			this.predecessors[state] = new int[into[state]];
+			this.successors[state] = new int[outOf[state]];
+			this.predecessorTransitions[state] = new double[into[state]];
+			this.successorTransitions[state] = new double[outOf[state]];
+			into[state] = 0;
+			outOf[state] = 0;
+		}
+		for (int state = 0; state < states.length; state++) {
+			for (int next = 0; next < states.length; next++) {
+				if (this.transitions[state][next] > Double.NEGATIVE_INFINITY) {
+					this.predecessorTransitions[next][into[next]] = this.transitions[state][next];
+					this.successorTransitions[state][outOf[state]] = this.transitions[state][next];
+					this.predecessors[next][into[next]++] = state;
+					this.successors[state][outOf[state]++] = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of states
+	 */
+	public final int getStateCount() {
+		return this.states.length;
+	}
+
+	/**
+	 * @return the number of observation symbols
+	 */
+	public final int getSymbolCount() {
+		return this.symbols.length;
+	}
+
+	/**
+	 * Get the name of a state
+	 *
+	 * @param state
+	 *            Id of the state
+	 * @return Name of the state
+	 */
+	public String getState(final int state) {
+		return this.states[state];
+	}
+
+	/**
+	 * Get the name of an observation symbol
+	 *
+	 * @param symbol
+	 *            Id of the symbol
+	 * @return Name of the symbol
+	 */
+	public String getSymbol(final int symbol) {
+		return this.symbols[symbol];
+	}
+
+	/**
+	 * Get the id of an observation symbol
+	 *
+	 * @param symbol
+	 *            Name of the symbol
+	 * @return Id of the symbol, -1 if the model does not emit it
+	 */
+	public int getSymbolId(final String symbol) {
+		return this.symbolIds.getOrDefault(symbol, -1);
+	}
+
+	/**
+	 * Get the ids of a sequence of observation symbols
+	 *
+	 * @param observations
+	 *            Names of the symbols
+	 * @return Id of each symbol, -1 for a symbol the model does not emit
+	 */
+	public int[] encode(final String[] observations) {
+		final int[] ids = new int[observations.length];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = this.getSymbolId(observations[i]);
+		}
+
+		return ids;
+	}
+
+	/**
+	 * @return the log probability of starting in each state
+	 */
+	public final double[] getInitial() {
+		return this.initial;
+	}
+
+	/**
+	 * @return the log probability of moving from each state to each state, by the state moved from
+	 */
+	public final double[][] getTransitions() {
+		return this.transitions;
+	}
+
+	/**
+	 * @return the log probability of each state emitting each symbol, by state
+	 */
+	public final double[][] getEmissions() {
+		return this.emissions;
+	}
+
+	/**
+	 * @return the ids of the states each state can be reached from, in increasing order, by the state reached
+	 */
+	public final int[][] getPredecessors() {
+		return this.predecessors;
+	}
+
+	/**
+	 * @return the ids of the states each state can move to, in increasing order, by the state moved from
+	 */
+	public final int[][] getSuccessors() {
+		return this.successors;
+	}
+
+	/**
+	 * @return the log probability of the transition from each of the predecessors of each state, in the order of the predecessors
+	 */
+	public final double[][] getPredecessorTransitions() {
+		return this.predecessorTransitions;
+	}
+
+	/**
+	 * @return the log probability of the transition to each of the successors of each state, in the order of the successors
+	 */
+	public final double[][] getSuccessorTransitions() {
+		return this.successorTransitions;
+	}
+
+	/**
+	 * @return the number of transitions that are not 0
+	 */
+	public final int getTransitionCount() {
+		return this.transitionCount;
+	}
+
+	/**
+	 * Get the logs of probabilities
+	 *
+	 * @param probabilities
+	 *            Probabilities
+	 * @return Natural log of each probability, negative infinity for 0
+	 */
+	private static double[] log(final double[] probabilities) {
+		final double[] logs = new double[probabilities.length];
+		for (int i = 0; i < logs.length; i++) {
+			logs[i] = Math.log(probabilities[i]);
+		}
+
+		return logs;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+/**
+ * Scaled forward and backward passes over a {@link CompiledHMM}. The forward probabilities at each observation are divided by their sum, and
+ * the backward probabilities by the same sums, so neither underflows on long sequences and the log likelihood is the sum of the logs of the
+ * sums. The passes work on probabilities rather than their logs, as they add paths up rather than pick the best one
+ *
+ * @author Ekal.Golas
+ */
+public class ForwardBackward {
+	private final int			n;
+	private final double[]		initial;
+	private final double[][]	transitions;
+	private final double[][]	emissions;
+
+	/**
+	 * Constructor
+	 *
+	 * @param model
+	 *            Model to run the passes over
+	 */
+	public ForwardBackward(final CompiledHMM model) {
+		this.n = model.getStateCount();
+		this.initial = exp(model.getInitial());
+		this.transitions = new double[this.n][];
+		this.emissions = new double[this.n][];
+		for (int state = 0; state < this.n; state++) {
+			this.transitions[state] = exp(model.getTransitions()[state]);
+			this.emissions[state] = exp(model.getEmissions()[state]);
+		}
+	}
+
+	/**
+	 * @return the probability of moving from each state to each state, by the state moved from
+	 */
+	final double[][] getTransitions() {
+		return this.transitions;
+	}
+
+	/**
+	 * Get the probability of a state emitting an observation
+	 *
+	 * @param state
+	 *            Id of the state
+	 * @param observation
+	 *            Id of the symbol, -1 for a symbol the model does not emit
+	 * @return Probability, 1 for a symbol the model does not emit, so that it is decoded from the transitions alone
+	 */
+	final double emission(final int state, final int observation) {
+		return observation < 0 ? 1 : this.emissions[state][observation];
+	}
+
+	/**
+	 * Get the log likelihood of a sequence of observations, summed over all paths of states
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @return Natural log of the probability of the sequence, negative infinity if no path emits it
+	 */
+	public double getLogLikelihood(final int[] observations) {
+		final double[] scales = new double[observations.length];
+		return this.forward(observations, new double[observations.length][this.n], scales);
+	}
+
+	/**
+	 * Get the probability of each state at each observation, given the whole sequence
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @return Probability of each state, by observation
+	 */
+	public double[][] getPosteriors(final int[] observations) {
+		final double[][] alpha = new double[observations.length][this.n];
+		final double[][] beta = new double[observations.length][this.n];
+		final double[] scales = new double[observations.length];
+		this.forward(observations, alpha, scales);
+		this.backward(observations, scales, beta);
+		for (int t = 0; t < observations.length; t++) {
+			for (int state = 0; state < this.n; state++) {
+				alpha[t][state] *= beta[t][state];
+			}
+		}
+
+		return alpha;
+	}
+
+	/**
+	 * Run the scaled forward pass
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @param alpha
+	 *            Filled with the scaled forward probability of each state, by observation
+	 * @param scales
+	 *            Filled with the sum of the forward probabilities at each observation before scaling
+	 * @return Natural log of the probability of the sequence
+	 */
+	double forward(final int[] observations, final double[][] alpha, final double[] scales) {
+		double logLikelihood = 0;
+		for (int t = 0; t < observations.length; t++) {
+			double sum = 0;
+			for (int state = 0; state < this.n; state++) {
+				double probability = 0;
+				if (t == 0) {
+					probability = this.initial[state];
+				} else {
+					for (int prevState = 0; prevState < this.n; prevState++) {
+						probability += alpha[t - 1][prevState] * this.transitions[prevState][state];
+					}
+				}
+
+				alpha[t][state] = probability * this.emission(state, observations[t]);
+				sum += alpha[t][state];
+			}
+
+			// Scale so that the probabilities sum to 1, unless no path reaches this observation
+			scales[t] = sum;
+			logLikelihood += Math.log(sum);
+			if (sum == 0) {
+				return Double.NEGATIVE_INFINITY;
+			}
+			for (int state = 0; state < this.n; state++) {
+				alpha[t][state] /= sum;
+			}
+		}
+
+		return logLikelihood;
+	}
+
+	/**
+	 * Run the backward pass, scaled by the sums of the forward pass
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @param scales
+	 *            Sum of the forward probabilities at each observation before scaling
+	 * @param beta
+	 *            Filled with the scaled backward probability of each state, by observation
+	 */
+	void backward(final int[] observations, final double[] scales, final double[][] beta) {
+		final int last = observations.length - 1;
+		if (last < 0) {
+			return;
+		}
+
+		for (int state = 0; state < this.n; state++) {
+			beta[last][state] = 1;
+		}
+
+		for (int t = last - 1; t >= 0; t--) {
+			for (int state = 0; state < this.n; state++) {
+				double probability = 0;
+				for (int next = 0; next < this.n; next++) {
+					probability += this.transitions[state][next] * this.emission(next, observations[t + 1]) * beta[t + 1][next];
+				}
+
+				beta[t][state] = probability / scales[t + 1];
+			}
+		}
+	}
+
+	/**
+	 * Get the probabilities of logs
+	 *
+	 * @param logs
+	 *            Natural logs of probabilities
+	 * @return Probabilities
+	 */
+	private static double[] exp(final double[] logs) {
+		final double[] probabilities = new double[logs.length];
+		for (int i = 0; i < probabilities.length; i++) {
+			probabilities[i] = Math.exp(logs[i]);
+		}
+
+		return probabilities;
+	}
+}
\ No newline at end of file
@@ -1,9 +1,19 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Implement the Viterbi algorithm and run it with the HMM in Fig. 6.3 to compute the most likely weather sequences for each of the two observation sequences
@@ -16,6 +26,7 @@ public class HMM {
 	private final List<String>						states;
 	private final Map<String, Map<String, Double>>	transitions;
 	private final Map<String, Map<Integer, Double>>	emissions;
+	private final Map<String, List<String>>			predecessors;
 
 	/**
 	 * Default constructor
@@ -24,6 +35,7 @@ public class HMM {
 		this.states = new ArrayList<>();
 		this.transitions = new HashMap<>();
 		this.emissions = new HashMap<>();
+		this.predecessors = new HashMap<>();
 	}
 
 	/**
@@ -43,6 +55,12 @@ public class HMM {
 		for (final Entry<String, Double> entry : transitionMap.entrySet()) {
 			this.transitions.putIfAbsent(state, new HashMap<>());
 			this.transitions.get(state).put(entry.getKey(), entry.getValue());
+
+			// List the states each state can be reached from, so that the transitions that are 0 are not evaluated
+			if (entry.getValue() > 0) {
+				this.predecessors.putIfAbsent(entry.getKey(), new ArrayList<>());
+				this.predecessors.get(entry.getKey()).add(state);
+			}
 		}
 
 		// Build emission matrix
@@ -52,6 +70,37 @@ public class HMM {
 		}
 	}
 
+	/**
+	 * Compile the states, transitions and emissions into arrays for {@link Viterbi}. The transitions from the initial state become the
+	 * probabilities of starting in each state, and the observations emitted become the symbols, in increasing order
+	 *
+	 * @return Compiled model
+	 */
+	CompiledHMM compile() {
+		final List<String> names = new ArrayList<>(this.states);
+		names.remove(this.INITIAL);
+		final TreeSet<Integer> observations = new TreeSet<>();
+		for (final Map<Integer, Double> emissionMap : this.emissions.values()) {
+			observations.addAll(emissionMap.keySet());
+		}
+
+		final String[] symbols = observations.stream().map(String::valueOf).toArray(String[]::new);
+		final double[] initial = new double[names.size()];
+		final double[][] transitionMatrix = new double[names.size()][names.size()];
+		final double[][] emissionMatrix = new double[names.size()][symbols.length];
+		for (int i = 0; i < names.size(); i++) {
+			initial[i] = this.transitions.getOrDefault(this.INITIAL, new HashMap<>()).getOrDefault(names.get(i), 0.0);
+			for (int j = 0; j < names.size(); j++) {
+				transitionMatrix[i][j] = this.transitions.getOrDefault(names.get(i), new HashMap<>()).getOrDefault(names.get(j), 0.0);
+			}
+			for (int j = 0; j < symbols.length; j++) {
+				emissionMatrix[i][j] = this.emissions.getOrDefault(names.get(i), new HashMap<>()).getOrDefault(Integer.parseInt(symbols[j]), 0.0);
+			}
+		}
+
+		return new CompiledHMM(names.toArray(new String[0]), symbols, initial, transitionMatrix, emissionMatrix);
+	}
+
 	/**
 	 * Runs the Viterbi algorithm with HMM
 	 *
@@ -59,7 +108,7 @@ public class HMM {
 	 *            Observations to predict for
 	 * @return Most likely sequences as a list of strings
 	 */
-	private List<String> predict(final char[] observations) {
+	List<String> predict(final char[] observations) {
 		// Initialize the resulting states
 		final List<String> result = new ArrayList<>();
 		int index = -1;
@@ -77,8 +126,10 @@ public class HMM {
 				// Calculate probabilities of transition from previous state to this state and emission of the current observation
 				final Map<String, Double> pathProbs = this.calculateTransitionProb(index, probs, observation, state);
 
-				// Select previous state with maximum probability
-				this.setBestState(index, pointers, probs, state, pathProbs);
+				// Select previous state with maximum probability, unless no state can move to this one
+				if (!pathProbs.isEmpty()) {
+					this.setBestState(index, pointers, probs, state, pathProbs);
+				}
 			}
 		}
 
@@ -123,7 +174,7 @@ public class HMM {
 	}
 
 	/**
-	 * Calculate probabilities of transition from previous state to this state and emission of the current observation
+	 * Calculate probabilities of transition from each previous state that can move to this state, and emission of the current observation
 	 *
 	 * @param index
 	 *            Index for probability table
@@ -141,7 +192,7 @@ public class HMM {
 			final Character observation,
 			final String state) throws NumberFormatException {
 		final Map<String, Double> pathProbs = new HashMap<>();
-		for (final String prevState : this.states) {
+		for (final String prevState : this.predecessors.getOrDefault(state, Collections.emptyList())) {
 			pathProbs.put(prevState,
 					probs.getOrDefault(index - 1, new HashMap<>()).getOrDefault(prevState, 0.0) *
 					this.transitions.get(prevState).getOrDefault(state, 0.0) *
@@ -158,6 +209,12 @@ public class HMM {
 	 *            Command line arguments
 	 */
 	public static void main(final String[] args) {
+		// Run with a model file if options are given
+		if (args.length > 0 && args[0].startsWith("-")) {
+			runModel(args);
+			return;
+		}
+
 		// Initialize and create the transition and emission matrix with static values
 		final HMM hmm = setup();
 
@@ -179,12 +236,223 @@ public class HMM {
 		}
 	}
 
+	/**
+	 * Decode with a model loaded from a file, or write the model of figure 6.3 to a file. Options are -model FILE to load, -train FILE with a
+	 * sequence of observation symbols on each line to re-estimate the model from, -iterations N and -tolerance X to stop training after,
+	 * -batch FILE to decode each line of, or - for standard input, -threads N to train or decode a batch on, and -write FILE to write the
+	 * trained model, or the model of figure 6.3, to. -beam B only extends the best B states at each observation, and -kbest K prints the K
+	 * most likely paths of the sequence. -stream FILE, or - for standard input, decodes the observation symbols of the file as one stream,
+	 * printing the states as they are decided, with at most -lag N observations undecided. Any other arguments are a sequence of
+	 * observation symbols to decode
+	 *
+	 * @param args
+	 *            Command line arguments
+	 */
+	private static void runModel(final String[] args) {
+		String model = null;
+		String batch = null;
+		String write = null;
+		String train = null;
+		int iterations = 100;
+		double tolerance = 1e-6;
+		int beam = 0;
+		int kbest = 1;
+		String stream = null;
+		int lag = 20;
+		int threads = Runtime.getRuntime().availableProcessors();
+		final List<String> observations = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("-") && !"-".equals(args[i]) && i + 1 == args.length) {
+				System.out.println("Missing value for " + args[i]);
+				return;
+			} else if ("-model".equals(args[i])) {
+				model = args[++i];
+			} else if ("-batch".equals(args[i])) {
+				batch = args[++i];
+			} else if ("-write".equals(args[i])) {
+				write = args[++i];
+			} else if ("-train".equals(args[i])) {
+				train = args[++i];
+			} else if ("-iterations".equals(args[i])) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if ("-tolerance".equals(args[i])) {
+				tolerance = Double.parseDouble(args[++i]);
+			} else if ("-beam".equals(args[i])) {
+				beam = Integer.parseInt(args[++i]);
+			} else if ("-kbest".equals(args[i])) {
+				kbest = Integer.parseInt(args[++i]);
+			} else if ("-stream".equals(args[i])) {
+				stream = args[++i];
+			} else if ("-lag".equals(args[i])) {
+				lag = Integer.parseInt(args[++i]);
+			} else if ("-threads".equals(args[i])) {
+				threads = Integer.parseInt(args[++i]);
+			} else {
+				observations.add(args[i]);
+			}
+		}
+
+		try {
+			// Write the model of figure 6.3, so that it can be loaded and changed
+			if (write != null && model == null) {
+				ModelFile.write(setup().compile(), new File(write));
+				System.out.println("Model written to the file: " + write);
+				return;
+			}
+			// The k best paths are only found without a beam, for the observations given, and the stream decoder has neither
+			final String usage = "Usage: HMM -model FILE [-train FILE [-iterations N] [-tolerance X] [-write FILE]] [-batch FILE | -] [-threads N] "
+					+ "[-beam B] [OBSERVATION...], or HMM -model FILE [-train ...] -kbest K OBSERVATION..., or HMM -model FILE -stream FILE | - "
+					+ "[-lag N], or HMM -write FILE";
+			if (kbest > 1 && (beam > 0 || batch != null || stream != null) || beam > 0 && stream != null) {
+				System.out.println("-kbest cannot be used with -beam, -batch or -stream, nor -beam with -stream");
+				System.out.println(usage);
+				return;
+			}
+			if (model == null) {
+				System.out.println(usage);
+				return;
+			}
+
+			final ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				CompiledHMM compiledHMM = ModelFile.read(new File(model));
+				if (train != null) {
+					compiledHMM = train(compiledHMM, train, executor, threads, iterations, tolerance);
+					if (write != null) {
+						ModelFile.write(compiledHMM, new File(write));
+						System.out.println("Model written to the file: " + write);
+					}
+					if (batch == null && observations.isEmpty()) {
+						return;
+					}
+				}
+
+				if (stream != null) {
+					stream(new OnlineViterbi(compiledHMM, lag), stream);
+					return;
+				}
+
+				final Viterbi viterbi = new Viterbi(compiledHMM, beam);
+				if (batch == null && kbest > 1) {
+					// Print each of the most likely paths with its log probability
+					for (final Viterbi.Path path : viterbi.decode(compiledHMM.encode(observations.toArray(new String[0])), kbest)) {
+						final String[] states = Arrays.stream(path.getStates()).mapToObj(compiledHMM::getState).toArray(String[]::new);
+						System.out.println(String.join(" ", states) + " " + String.format("%.4f", path.getLogProbability()));
+					}
+
+					return;
+				}
+				if (batch == null) {
+					System.out.println(String.join(" ", viterbi.decode(observations.toArray(new String[0]))));
+					return;
+				}
+
+				// Decode each line of the batch on a pool of workers
+				try (BufferedReader reader = new BufferedReader("-".equals(batch) ? new InputStreamReader(System.in) : new FileReader(batch))) {
+					final BatchDecoder batchDecoder = new BatchDecoder(viterbi, executor, threads * 4);
+					batchDecoder.decode(reader, System.out);
+					System.out.println();
+					batchDecoder.printStatistics(System.out);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} catch (final IOException e) {
+			System.out.println("ERROR: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decode the observation symbols of a file as one stream, printing the states as they are decided
+	 *
+	 * @param onlineViterbi
+	 *            Streaming decoder
+	 * @param stream
+	 *            File with observation symbols separated by white space, or - for standard input
+	 * @throws IOException
+	 */
+	private static void stream(final OnlineViterbi onlineViterbi, final String stream) throws IOException {
+		final long start = System.nanoTime();
+		long observations = 0;
+		int delay = 0;
+		try (BufferedReader reader = new BufferedReader("-".equals(stream) ? new InputStreamReader(System.in) : new FileReader(stream))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				final String trimmed = line.trim();
+				if (trimmed.isEmpty()) {
+					continue;
+				}
+
+				// Print the states decided by each line as soon as it is read
+				final StringBuilder builder = new StringBuilder();
+				for (final String observation : trimmed.split("\\s+")) {
+					observations++;
+					for (final String state : onlineViterbi.push(observation)) {
+						builder.append(state).append(' ');
+					}
+
+					delay = Math.max(delay, onlineViterbi.getPending());
+				}
+
+				System.out.print(builder);
+				System.out.flush();
+			}
+		}
+
+		System.out.println(String.join(" ", onlineViterbi.names(onlineViterbi.flush())));
+		System.out.println();
+		System.out.println("Observations decoded: " + observations);
+		System.out.println("Longest delay: " + delay + " observations");
+		System.out.println("Throughput: " + String.format("%.2f", observations / ((System.nanoTime() - start) / 1e9)) + " observations/sec");
+	}
+
+	/**
+	 * Re-estimate a model with Baum-Welch from the sequences of a file
+	 *
+	 * @param model
+	 *            Model to start from
+	 * @param train
+	 *            File with a sequence of observation symbols separated by white space on each line
+	 * @param executor
+	 *            Executor to run the expectation step on
+	 * @param threads
+	 *            Number of slices to split the sequences into
+	 * @param iterations
+	 *            Highest number of iterations
+	 * @param tolerance
+	 *            Relative change in the log likelihood to stop at
+	 * @return Re-estimated model
+	 * @throws IOException
+	 */
+	private static CompiledHMM train(final CompiledHMM model, final String train, final ExecutorService executor, final int threads,
+			final int iterations, final double tolerance) throws IOException {
+		// Read each sequence as the ids of its symbols
+		final List<int[]> sequences = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(train))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				final String trimmed = line.trim();
+				if (!trimmed.isEmpty()) {
+					sequences.add(model.encode(trimmed.split("\\s+")));
+				}
+			}
+		}
+
+		System.out.println("Training sequences: " + sequences.size());
+		try {
+			return new BaumWelch(executor, threads, System.out).train(model, sequences, iterations, tolerance);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while training", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to train: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
 	/**
 	 * Set the transition and emission maps according to figure 6.3
 	 *
 	 * @return Instance of the hmm class after setup
 	 */
-	private static HMM setup() {
+	static HMM setup() {
 		final HMM hmm = new HMM();
 		Map<String, Double> transitionMap = new HashMap<>();
 		transitionMap.put("H", 0.8);
@@ -0,0 +1,210 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to read and write hidden Markov models as text. Each line is a keyword followed by its values, and lines that are blank or start with
+ * # are skipped. Probabilities that are not listed are 0, so sparse models stay small:
+ *
+ * <pre>
+ * states H C
+ * symbols 1 2 3
+ * initial H 0.8
+ * transition H C 0.3
+ * emission C 1 0.5
+ * </pre>
+ *
+ * States and symbols may be listed over several lines, and must be listed before the probabilities that name them
+ *
+ * @author Ekal.Golas
+ */
+public class ModelFile {
+	/**
+	 * Read a model
+	 *
+	 * @param file
+	 *            Model file
+	 * @return Compiled model
+	 * @throws IOException
+	 */
+	public static CompiledHMM read(final File file) throws IOException {
+		final List<String> states = new ArrayList<>();
+		final List<String> symbols = new ArrayList<>();
+		final Map<String, Integer> stateIds = new HashMap<>();
+		final Map<String, Integer> symbolIds = new HashMap<>();
+		double[] initial = null;
+		double[][] transitions = null;
+		double[][] emissions = null;
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			int number = 0;
+			for (String line; (line = reader.readLine()) != null;) {
+				number++;
+				final String[] values = line.trim().split("\\s+");
+				if (values[0].isEmpty() || values[0].startsWith("#")) {
+					continue;
+				}
+
+				// Name the states and symbols, then allocate the probabilities once the first one is read
+				final String keyword = values[0];
+				if ("states".equals(keyword) || "symbols".equals(keyword)) {
+					if (initial != null) {
+						throw new IOException(file.getName() + ":" + number + ": States and symbols must be listed before probabilities");
+					}
+
+					final List<String> names = "states".equals(keyword) ? states : symbols;
+					final Map<String, Integer> ids = "states".equals(keyword) ? stateIds : symbolIds;
+					for (int i = 1; i < values.length; i++) {
+						ids.put(values[i], names.size());
+						names.add(values[i]);
+					}
+
+					continue;
+				}
+
+				if (initial == null) {
+					initial = new double[states.size()];
+					transitions = new double[states.size()][states.size()];
+					emissions = new double[states.size()][symbols.size()];
+				}
+
+				// Set the probability named by the line
+				if ("initial".equals(keyword) && values.length == 3) {
+					initial[id(stateIds, values[1], file, number)] = probability(values[2], file, number);
+				} else if ("transition".equals(keyword) && values.length == 4) {
+					transitions[id(stateIds, values[1], file, number)][id(stateIds, values[2], file, number)] = probability(values[3], file, number);
+				} else if ("emission".equals(keyword) && values.length == 4) {
+					emissions[id(stateIds, values[1], file, number)][id(symbolIds, values[2], file, number)] = probability(values[3], file, number);
+				} else {
+					throw new IOException(file.getName() + ":" + number + ": Unexpected line: " + line);
+				}
+			}
+		}
+
+		if (states.isEmpty()) {
+			throw new IOException(file.getName() + ": No states listed");
+		}
+		if (initial == null) {
+			initial = new double[states.size()];
+			transitions = new double[states.size()][states.size()];
+			emissions = new double[states.size()][symbols.size()];
+		}
+
+		return new CompiledHMM(states.toArray(new String[0]), symbols.toArray(new String[0]), initial, transitions, emissions);
+	}
+
+	/**
+	 * Write a model, leaving out the probabilities that are 0
+	 *
+	 * @param model
+	 *            Model to write
+	 * @param file
+	 *            File to write to
+	 * @throws IOException
+	 */
+	public static void write(final CompiledHMM model, final File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(file)) {
+			final String[] states = new String[model.getStateCount()];
+			for (int state = 0; state < states.length; state++) {
+				states[state] = model.getState(state);
+			}
+
+			final String[] symbols = new String[model.getSymbolCount()];
+			for (int symbol = 0; symbol < symbols.length; symbol++) {
+				symbols[symbol] = model.getSymbol(symbol);
+			}
+
+			writer.println("states " + String.join(" ", states));
+			writer.println("symbols " + String.join(" ", symbols));
+			for (int state = 0; state < states.length; state++) {
+				write(writer, "initial " + states[state], model.getInitial()[state]);
+			}
+			for (int state = 0; state < states.length; state++) {
+				for (int next = 0; next < states.length; next++) {
+					write(writer, "transition " + states[state] + " " + states[next], model.getTransitions()[state][next]);
+				}
+			}
+			for (int state = 0; state < states.length; state++) {
+				for (int symbol = 0; symbol < symbols.length; symbol++) {
+					write(writer, "emission " + states[state] + " " + symbols[symbol], model.getEmissions()[state][symbol]);
+				}
+			}
+
+			if (writer.checkError()) {
+				throw new IOException("Unable to write " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Write a probability, if it is not 0. It is rounded to 15 significant digits, which drops the error of taking it back from its log
+	 *
+	 * @param writer
+	 *            Writer
+	 * @param prefix
+	 *            Keyword and names of the probability
+	 * @param logProbability
+	 *            Log of the probability
+	 */
+	private static void write(final PrintWriter writer, final String prefix, final double logProbability) {
+		if (logProbability > Double.NEGATIVE_INFINITY) {
+			writer.println(prefix + " " + new BigDecimal(Math.exp(logProbability)).round(MathContext.DECIMAL64).stripTrailingZeros());
+		}
+	}
+
+	/**
+	 * Look up the id of a state or symbol
+	 *
+	 * @param ids
+	 *            Ids by name
+	 * @param name
+	 *            Name to look up
+	 * @param file
+	 *            File being read
+	 * @param number
+	 *            Number of the line being read
+	 * @return Id
+	 * @throws IOException
+	 */
+	private static int id(final Map<String, Integer> ids, final String name, final File file, final int number) throws IOException {
+		final Integer id = ids.get(name);
+		if (id == null) {
+			throw new IOException(file.getName() + ":" + number + ": Not listed: " + name);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Parse a probability
+	 *
+	 * @param value
+	 *            Text of the probability
+	 * @param file
+	 *            File being read
+	 * @param number
+	 *            Number of the line being read
+	 * @return Probability
+	 * @throws IOException
+	 */
+	private static double probability(final String value, final File file, final int number) throws IOException {
+		try {
+			final double probability = Double.parseDouble(value);
+			if (probability >= 0 && probability <= 1) {
+				return probability;
+			}
+		} catch (final NumberFormatException e) {
+			// Reported below
+		}
+
+		throw new IOException(file.getName() + ":" + number + ": Not a probability: " + value);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+import java.util.Arrays;
+
+/**
+ * Viterbi decoder over a {@link CompiledHMM} for an unbounded stream of observations. The states of a prefix of the stream are decided as
+ * soon as the best paths into every state that can still be reached pass through the same states, as no later observation can change them.
+ * If they have not converged after a fixed lag, the oldest state is taken from the best path so far, and the paths that do not pass through
+ * it are dropped. The back pointers are kept in a ring of columns one longer than the lag, so memory does not grow with the stream
+ *
+ * @author Ekal.Golas
+ */
+public class OnlineViterbi {
+	private static final int[]	NONE	= new int[0];
+	private final CompiledHMM	model;
+	private final int			lag;
+	private final int[][]		pointers;
+	private final int[]			levels;
+	private final int[]			offsets;
+	private final int[]			seen;
+	private final boolean[]		through;
+	private final boolean[]		throughNext;
+	private double[]			scores;
+	private double[]			next;
+	private long				time;
+	private long				decided;
+	private int					stamp;
+
+	/**
+	 * Constructor
+	 *
+	 * @param model
+	 *            Model to decode with
+	 * @param lag
+	 *            Highest number of observations to leave undecided after each one is pushed
+	 */
+	public OnlineViterbi(final CompiledHMM model, final int lag) {
+		if (lag < 0) {
+			throw new IllegalArgumentException("Lag cannot be negative: " + lag);
+		}
+
+		final int n = model.getStateCount();
+		this.model = model;
+		this.lag = lag;
+		this.pointers = new int[lag + 1][n];
+		this.levels = new int[(lag + 1) * n];
+		this.offsets = new int[lag + 2];
+		this.seen = new int[n];
+		this.through = new boolean[n];
+		this.throughNext = new boolean[n];
+		this.scores = new double[n];
+		this.next = new double[n];
+	}
+
+	/**
+	 * @return the number of observations pushed that are not decided yet
+	 */
+	public int getPending() {
+		return (int) (this.time - this.decided);
+	}
+
+	/**
+	 * Push the next observation of the stream. An observation the model does not emit, or that no path that can still be reached can emit,
+	 * is decoded from the transitions alone
+	 *
+	 * @param observation
+	 *            Id of the observation symbol, -1 for a symbol the model does not emit
+	 * @return Id of the state at each observation that was decided by this one, oldest first, which may be none
+	 */
+	public int[] push(final int observation) {
+		if (!this.extend(observation, true)) {
+			this.extend(observation, false);
+		}
+
+		// Keep the best score at 0, so that the scores do not lose precision as the stream grows
+		double best = Double.NEGATIVE_INFINITY;
+		for (final double score : this.next) {
+			best = Math.max(best, score);
+		}
+		if (best > Double.NEGATIVE_INFINITY) {
+			for (int state = 0; state < this.next.length; state++) {
+				this.next[state] -= best;
+			}
+		}
+
+		final double[] swap = this.scores;
+		this.scores = this.next;
+		this.next = swap;
+		this.time++;
+		return this.decide();
+	}
+
+	/**
+	 * Push the next observation of the stream
+	 *
+	 * @param observation
+	 *            Name of the observation symbol
+	 * @return Name of the state at each observation that was decided by this one, oldest first, which may be none
+	 */
+	public String[] push(final String observation) {
+		return this.names(this.push(this.model.getSymbolId(observation)));
+	}
+
+	/**
+	 * Decide the rest of the stream from the best path so far, and start a new stream
+	 *
+	 * @return Id of the state at each observation that was not decided yet, oldest first
+	 */
+	public int[] flush() {
+		final int[] states = this.time > this.decided ? this.emit(this.time - 1, Viterbi.argMax(this.scores)) : NONE;
+		this.time = 0;
+		this.decided = 0;
+		return states;
+	}
+
+	/**
+	 * Get the names of states
+	 *
+	 * @param states
+	 *            Ids of the states
+	 * @return Names of the states
+	 */
+	public String[] names(final int[] states) {
+		return Arrays.stream(states).mapToObj(this.model::getState).toArray(String[]::new);
+	}
+
+	/**
+	 * Extend the best path into each state with an observation, keeping the back pointers in the column of the ring for the observation
+	 *
+	 * @param observation
+	 *            Id of the observation symbol, -1 for a symbol the model does not emit
+	 * @param emit
+	 *            Whether to add the probability of emitting the observation
+	 * @return Whether any state can be reached
+	 */
+	private boolean extend(final int observation, final boolean emit) {
+		final double[][] transitions = this.model.getPredecessorTransitions();
+		final double[][] emissions = this.model.getEmissions();
+		final int[][] predecessors = this.model.getPredecessors();
+		final int[] column = this.pointers[this.slot(this.time)];
+		boolean reached = false;
+		for (int state = 0; state < this.next.length; state++) {
+			double best = this.model.getInitial()[state];
+			int pointer = 0;
+			if (this.time > 0) {
+				best = Double.NEGATIVE_INFINITY;
+				for (int i = 0; i < predecessors[state].length; i++) {
+					final double score = this.scores[predecessors[state][i]] + transitions[state][i];
+					if (score > best) {
+						best = score;
+						pointer = predecessors[state][i];
+					}
+				}
+			}
+
+			this.next[state] = emit ? best + Viterbi.emission(emissions, state, observation) : best;
+			column[state] = pointer;
+			reached |= this.next[state] > Double.NEGATIVE_INFINITY;
+		}
+
+		return reached;
+	}
+
+	/**
+	 * Decide the states up to where the paths into the states that can still be reached converge, or the oldest state if they have not
+	 * converged within the lag. The distinct states on those paths are listed back from the latest observation, one level for each
+	 * observation, until there is only one
+	 *
+	 * @return Id of the state at each observation decided, oldest first
+	 */
+	private int[] decide() {
+		final long latest = this.time - 1;
+		int count = 0;
+		for (int state = 0; state < this.scores.length; state++) {
+			if (this.scores[state] > Double.NEGATIVE_INFINITY) {
+				this.levels[count++] = state;
+			}
+		}
+
+		this.offsets[0] = 0;
+		this.offsets[1] = count;
+		int level = 0;
+		while (count > 1 && latest - level > this.decided) {
+			final int[] column = this.pointers[this.slot(latest - level)];
+			if (++this.stamp == Integer.MAX_VALUE) {
+				Arrays.fill(this.seen, 0);
+				this.stamp = 1;
+			}
+
+			// List the distinct states the states of this level were reached from
+			int end = this.offsets[level + 1];
+			for (int i = this.offsets[level]; i < this.offsets[level + 1]; i++) {
+				final int pointer = column[this.levels[i]];
+				if (this.seen[pointer] != this.stamp) {
+					this.seen[pointer] = this.stamp;
+					this.levels[end++] = pointer;
+				}
+			}
+
+			level++;
+			this.offsets[level + 1] = end;
+			count = end - this.offsets[level];
+		}
+
+		if (count == 1) {
+			return this.emit(latest - level, this.levels[this.offsets[level]]);
+		}
+		if (this.time - this.decided <= this.lag) {
+			return NONE;
+		}
+
+		// Take the oldest state over the lag from the best path
+		final long position = latest - this.lag;
+		int state = Viterbi.argMax(this.scores);
+		for (long t = latest; t > position; t--) {
+			state = this.pointers[this.slot(t)][state];
+		}
+
+		// Follow the levels forward to drop the paths that do not pass through it
+		final int top = (int) (latest - position);
+		for (int i = this.offsets[top]; i < this.offsets[top + 1]; i++) {
+			this.through[this.levels[i]] = this.levels[i] == state;
+		}
+
+		boolean[] previous = this.through;
+		boolean[] current = this.throughNext;
+		for (int l = top - 1; l >= 0; l--) {
+			final int[] column = this.pointers[this.slot(latest - l)];
+			for (int i = this.offsets[l]; i < this.offsets[l + 1]; i++) {
+				current[this.levels[i]] = previous[column[this.levels[i]]];
+			}
+
+			final boolean[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		for (int i = this.offsets[0]; i < this.offsets[1]; i++) {
+			if (!previous[this.levels[i]]) {
+				this.scores[this.levels[i]] = Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		return this.emit(position, state);
+	}
+
+	/**
+	 * Decide the states up to an observation, following the back pointers from its state
+	 *
+	 * @param position
+	 *            Observation to decide up to
+	 * @param state
+	 *            Id of the state at the observation
+	 * @return Id of the state at each observation decided, oldest first
+	 */
+	private int[] emit(final long position, final int state) {
+		final int[] states = new int[(int) (position - this.decided + 1)];
+		states[states.length - 1] = state;
+		for (int i = states.length - 1; i > 0; i--) {
+			states[i - 1] = this.pointers[this.slot(this.decided + i)][states[i]];
+		}
+
+		this.decided = position + 1;
+		return states;
+	}
+
+	/**
+	 * Get the column of the ring that keeps the back pointers of an observation
+	 *
+	 * @param t
+	 *            Position of the observation in the stream
+	 * @return Index of the column
+	 */
+	private int slot(final long t) {
+		return (int) (t % this.pointers.length);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,484 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Viterbi decoder over a {@link CompiledHMM}, in log space so that long sequences do not underflow. Only the scores of the previous and the
+ * current observation are kept, in two rows that are swapped after each observation, and the best previous state of each state at each
+ * observation is kept in one flat array that the best path is read back from. Each state is only extended from the states that can move to
+ * it, so decoding takes time in proportion to the transitions that are not 0 rather than to the square of the states. With a beam, only the
+ * best states at each observation are extended, through the states they can move to
+ *
+ * @author Ekal.Golas
+ */
+public class Viterbi {
+	private final CompiledHMM	model;
+	private final int			beam;
+
+	/**
+	 * Path of states and its log probability, as found by {@link Viterbi#decode(int[], int)}
+	 */
+	public static class Path {
+		private final int[]		states;
+		private final double	logProbability;
+
+		/**
+		 * Constructor
+		 *
+		 * @param states
+		 *            Id of the state at each observation
+		 * @param logProbability
+		 *            Log probability of the path emitting the observations
+		 */
+		private Path(final int[] states, final double logProbability) {
+			this.states = states;
+			this.logProbability = logProbability;
+		}
+
+		/**
+		 * @return the id of the state at each observation
+		 */
+		public final int[] getStates() {
+			return this.states;
+		}
+
+		/**
+		 * @return the log probability of the path emitting the observations
+		 */
+		public final double getLogProbability() {
+			return this.logProbability;
+		}
+	}
+
+	/**
+	 * Constructor for an exact decoder
+	 *
+	 * @param model
+	 *            Model to decode with
+	 */
+	public Viterbi(final CompiledHMM model) {
+		this(model, 0);
+	}
+
+	/**
+	 * Constructor for a decoder that only extends the best states at each observation
+	 *
+	 * @param model
+	 *            Model to decode with
+	 * @param beam
+	 *            Number of states to extend at each observation, 0 to extend all of them
+	 */
+	public Viterbi(final CompiledHMM model, final int beam) {
+		this.model = model;
+		this.beam = beam;
+	}
+
+	/**
+	 * Find the most likely sequence of states for a sequence of observations. An observation the model does not emit is decoded from the
+	 * transitions alone
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @return Id of the most likely state at each observation
+	 */
+	public int[] decode(final int[] observations) {
+		final int n = this.model.getStateCount();
+		final int length = observations.length;
+		if (length == 0) {
+			return new int[0];
+		}
+		if (this.beam > 0 && this.beam < n) {
+			return this.decodeBeam(observations);
+		}
+
+		final double[][] transitions = this.model.getPredecessorTransitions();
+		final double[][] emissions = this.model.getEmissions();
+		final int[][] predecessors = this.model.getPredecessors();
+		final int[] pointers = new int[length * n];
+		double[] previous = new double[n];
+		double[] current = new double[n];
+
+		// Start in each state and emit the first observation
+		for (int state = 0; state < n; state++) {
+			previous[state] = this.model.getInitial()[state] + emission(emissions, state, observations[0]);
+		}
+
+		// Extend the best path into each state with each observation
+		for (int t = 1; t < length; t++) {
+			final int offset = t * n;
+			for (int state = 0; state < n; state++) {
+				double best = Double.NEGATIVE_INFINITY;
+				int pointer = 0;
+				for (int i = 0; i < predecessors[state].length; i++) {
+					final double score = previous[predecessors[state][i]] + transitions[state][i];
+					if (score > best) {
+						best = score;
+						pointer = predecessors[state][i];
+					}
+				}
+
+				current[state] = best + emission(emissions, state, observations[t]);
+				pointers[offset + state] = pointer;
+			}
+
+			final double[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		// Follow the back pointers from the best final state
+		final int[] path = new int[length];
+		path[length - 1] = argMax(previous);
+		for (int t = length - 1; t > 0; t--) {
+			path[t - 1] = pointers[t * n + path[t]];
+		}
+
+		return path;
+	}
+
+	/**
+	 * Find a likely sequence of states, extending only the best states at each observation through the states they can move to. The states
+	 * that are not reached keep a score of negative infinity, so the rows are only reset where they were written
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @return Id of the state at each observation on the best path found
+	 */
+	private int[] decodeBeam(final int[] observations) {
+		final int n = this.model.getStateCount();
+		final int length = observations.length;
+		final double[][] transitions = this.model.getSuccessorTransitions();
+		final double[][] emissions = this.model.getEmissions();
+		final int[][] successors = this.model.getSuccessors();
+		final int[] pointers = new int[length * n];
+		final double[] buffer = new double[n];
+		double[] previous = new double[n];
+		double[] current = new double[n];
+		int[] active = new int[n];
+		int[] reached = new int[n];
+		Arrays.fill(previous, Double.NEGATIVE_INFINITY);
+		Arrays.fill(current, Double.NEGATIVE_INFINITY);
+
+		// Start in each state that can emit the first observation
+		int activeCount = 0;
+		for (int state = 0; state < n; state++) {
+			previous[state] = this.model.getInitial()[state] + emission(emissions, state, observations[0]);
+			if (previous[state] > Double.NEGATIVE_INFINITY) {
+				active[activeCount++] = state;
+			}
+		}
+
+		activeCount = this.prune(previous, active, activeCount, buffer);
+		for (int t = 1; t < length; t++) {
+			// Extend the best path of each active state into the states it can move to
+			final int offset = t * n;
+			int reachedCount = 0;
+			for (int i = 0; i < activeCount; i++) {
+				final int prevState = active[i];
+				for (int j = 0; j < successors[prevState].length; j++) {
+					final int state = successors[prevState][j];
+					final double score = previous[prevState] + transitions[prevState][j];
+					if (current[state] == Double.NEGATIVE_INFINITY) {
+						reached[reachedCount++] = state;
+					}
+					if (score > current[state]) {
+						current[state] = score;
+						pointers[offset + state] = prevState;
+					}
+				}
+			}
+
+			// Emit the observation from the states reached, keeping those that can emit it
+			int count = 0;
+			for (int i = 0; i < reachedCount; i++) {
+				final int state = reached[i];
+				current[state] += emission(emissions, state, observations[t]);
+				if (current[state] > Double.NEGATIVE_INFINITY) {
+					reached[count++] = state;
+				}
+			}
+
+			// Clear the previous row and swap it with the current one
+			for (int i = 0; i < activeCount; i++) {
+				previous[active[i]] = Double.NEGATIVE_INFINITY;
+			}
+
+			final double[] swap = previous;
+			previous = current;
+			current = swap;
+			final int[] swapStates = active;
+			active = reached;
+			reached = swapStates;
+			activeCount = this.prune(previous, active, count, buffer);
+		}
+
+		// Follow the back pointers from the best final state
+		final int[] path = new int[length];
+		for (int i = 0; i < activeCount; i++) {
+			if (previous[active[i]] > previous[path[length - 1]]) {
+				path[length - 1] = active[i];
+			}
+		}
+		for (int t = length - 1; t > 0; t--) {
+			path[t - 1] = pointers[t * n + path[t]];
+		}
+
+		return path;
+	}
+
+	/**
+	 * Keep the best states of the beam, in increasing order of state so that ties are broken as without a beam, and clear the scores of the
+	 * rest
+	 *
+	 * @param scores
+	 *            Score of each state
+	 * @param active
+	 *            States that have a score
+	 * @param count
+	 *            Number of states that have a score
+	 * @param buffer
+	 *            Space for the scores of the states
+	 * @return Number of states kept
+	 */
+	private int prune(final double[] scores, final int[] active, final int count, final double[] buffer) {
+		Arrays.sort(active, 0, count);
+		if (count <= this.beam) {
+			return count;
+		}
+
+		// Find the lowest score kept, and how many states with that score fit in the beam
+		for (int i = 0; i < count; i++) {
+			buffer[i] = scores[active[i]];
+		}
+
+		final double threshold = select(buffer, count, this.beam - 1);
+		int ties = this.beam;
+		for (int i = 0; i < count; i++) {
+			if (scores[active[i]] > threshold) {
+				ties--;
+			}
+		}
+
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			final int state = active[i];
+			if (scores[state] > threshold || scores[state] == threshold && ties-- > 0) {
+				active[kept++] = state;
+			} else {
+				scores[state] = Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		return kept;
+	}
+
+	/**
+	 * Find the k-th highest of some values, counting from 0, by partitioning them in place
+	 *
+	 * @param values
+	 *            Values, which are reordered
+	 * @param count
+	 *            Number of values
+	 * @param k
+	 *            Rank of the value to find
+	 * @return k-th highest value
+	 */
+	static double select(final double[] values, final int count, final int k) {
+		int low = 0;
+		int high = count - 1;
+		while (low < high) {
+			// Partition around the middle value, higher values first
+			final double pivot = values[low + high >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (values[i] > pivot) {
+					i++;
+				}
+				while (values[j] < pivot) {
+					j--;
+				}
+				if (i <= j) {
+					final double swap = values[i];
+					values[i++] = values[j];
+					values[j--] = swap;
+				}
+			}
+
+			// Continue in the part that holds the rank
+			if (k <= j) {
+				high = j;
+			} else if (k >= i) {
+				low = i;
+			} else {
+				return values[k];
+			}
+		}
+
+		return values[k];
+	}
+
+	/**
+	 * Find the most likely sequences of states for a sequence of observations. The k best paths into each state are kept at each observation,
+	 * each with the state and rank it was extended from
+	 *
+	 * @param observations
+	 *            Id of each observation symbol, -1 for a symbol the model does not emit
+	 * @param k
+	 *            Number of paths to find
+	 * @return Up to k paths that can emit the observations, most likely first
+	 */
+	public List<Path> decode(final int[] observations, final int k) {
+		final int n = this.model.getStateCount();
+		final int length = observations.length;
+		final List<Path> paths = new ArrayList<>();
+		if (length == 0 || k < 1) {
+			return paths;
+		}
+
+		final double[][] transitions = this.model.getPredecessorTransitions();
+		final double[][] emissions = this.model.getEmissions();
+		final int[][] predecessors = this.model.getPredecessors();
+		final int[] pointerStates = new int[length * n * k];
+		final int[] pointerRanks = new int[length * n * k];
+		double[] previous = new double[n * k];
+		double[] current = new double[n * k];
+		int[] previousCounts = new int[n];
+		int[] currentCounts = new int[n];
+
+		// Start in each state that can emit the first observation
+		for (int state = 0; state < n; state++) {
+			previous[state * k] = this.model.getInitial()[state] + emission(emissions, state, observations[0]);
+			previousCounts[state] = previous[state * k] > Double.NEGATIVE_INFINITY ? 1 : 0;
+		}
+
+		// Keep the best k extensions of the paths into each state with each observation
+		for (int t = 1; t < length; t++) {
+			for (int state = 0; state < n; state++) {
+				final double emission = emission(emissions, state, observations[t]);
+				final int base = state * k;
+				final int pointerBase = (t * n + state) * k;
+				int count = 0;
+				for (int i = 0; i < predecessors[state].length; i++) {
+					final int prevState = predecessors[state][i];
+					final double transition = transitions[state][i] + emission;
+					for (int rank = 0; rank < previousCounts[prevState]; rank++) {
+						// The paths into the previous state are best first, so the rest cannot be kept once one is not
+						final double score = previous[prevState * k + rank] + transition;
+						if (score == Double.NEGATIVE_INFINITY || count == k && score <= current[base + k - 1]) {
+							break;
+						}
+
+						int position = Math.min(count, k - 1);
+						for (; position > 0 && current[base + position - 1] < score; position--) {
+							current[base + position] = current[base + position - 1];
+							pointerStates[pointerBase + position] = pointerStates[pointerBase + position - 1];
+							pointerRanks[pointerBase + position] = pointerRanks[pointerBase + position - 1];
+						}
+
+						current[base + position] = score;
+						pointerStates[pointerBase + position] = prevState;
+						pointerRanks[pointerBase + position] = rank;
+						count = Math.min(count + 1, k);
+					}
+				}
+
+				currentCounts[state] = count;
+			}
+
+			final double[] swap = previous;
+			previous = current;
+			current = swap;
+			final int[] swapCounts = previousCounts;
+			previousCounts = currentCounts;
+			currentCounts = swapCounts;
+		}
+
+		// Pick the best k final paths over all states
+		final int[] finalStates = new int[k];
+		final int[] finalRanks = new int[k];
+		final double[] finalScores = new double[k];
+		int count = 0;
+		for (int state = 0; state < n; state++) {
+			for (int rank = 0; rank < previousCounts[state]; rank++) {
+				final double score = previous[state * k + rank];
+				if (count == k && score <= finalScores[k - 1]) {
+					break;
+				}
+
+				int position = Math.min(count, k - 1);
+				for (; position > 0 && finalScores[position - 1] < score; position--) {
+					finalScores[position] = finalScores[position - 1];
+					finalStates[position] = finalStates[position - 1];
+					finalRanks[position] = finalRanks[position - 1];
+				}
+
+				finalScores[position] = score;
+				finalStates[position] = state;
+				finalRanks[position] = rank;
+				count = Math.min(count + 1, k);
+			}
+		}
+
+		// Follow the back pointers of each path
+		for (int i = 0; i < count; i++) {
+			final int[] path = new int[length];
+			path[length - 1] = finalStates[i];
+			int rank = finalRanks[i];
+			for (int t = length - 1; t > 0; t--) {
+				final int pointer = (t * n + path[t]) * k + rank;
+				path[t - 1] = pointerStates[pointer];
+				rank = pointerRanks[pointer];
+			}
+
+			paths.add(new Path(path, finalScores[i]));
+		}
+
+		return paths;
+	}
+
+	/**
+	 * Find the most likely sequence of states for a sequence of observations
+	 *
+	 * @param observations
+	 *            Names of the observation symbols
+	 * @return Name of the most likely state at each observation
+	 */
+	public String[] decode(final String[] observations) {
+		final int[] path = this.decode(this.model.encode(observations));
+		return Arrays.stream(path).mapToObj(this.model::getState).toArray(String[]::new);
+	}
+
+	/**
+	 * Get the log probability of a state emitting an observation
+	 *
+	 * @param emissions
+	 *            Log probability of each state emitting each symbol
+	 * @param state
+	 *            Id of the state
+	 * @param observation
+	 *            Id of the symbol, -1 for a symbol the model does not emit
+	 * @return Log probability, 0 for a symbol the model does not emit
+	 */
+	static double emission(final double[][] emissions, final int state, final int observation) {
+		return observation < 0 ? 0 : emissions[state][observation];
+	}
+
+	/**
+	 * Find the index of the highest score, the first one if there are ties
+	 *
+	 * @param scores
+	 *            Scores
+	 * @return Index of the highest score
+	 */
+	static int argMax(final double[] scores) {
+		int best = 0;
+		for (int i = 1; i < scores.length; i++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+
+		return best;
+	}
+}
\ No newline at end of file
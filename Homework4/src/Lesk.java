@@ -1,11 +1,10 @@
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -53,6 +52,7 @@ public class Lesk {
 
 			// Display results after disambiguation
 			displayResults(parser.getSynsets(), split);
+			SynsetCache.getInstance().printStatistics(System.out);
 			System.out.println("Total time taken: " + (System.currentTimeMillis() - start) + " milliseconds");
 		} catch (final Exception e) {
 			System.out.println("ERROR: " + e.getMessage());
@@ -94,9 +94,9 @@ public class Lesk {
 	 * @param defaults
 	 *            Default synsets for each synset array
 	 * @param signatures
-	 *            Map of all stems for the synsets
+	 *            Sorted ids of all stems for the synsets
 	 */
-	private static void disambiguate(final List<Synset[]> synsets, final List<Synset> defaults, final Map<Synset, Set<String>> signatures) {
+	private static void disambiguate(final List<Synset[]> synsets, final List<Synset> defaults, final Map<Synset, int[]> signatures) {
 		for (int i = 0; i < synsets.size(); i++) {
 			final Synset[] synset_list = synsets.get(i);
 			if (synset_list.length == 0) {
@@ -104,7 +104,7 @@ public class Lesk {
 			}
 
 			// Get a set of all words found except the ones in this synset
-			final Set<String> strings = new HashSet<>();
+			final BitSet strings = new BitSet();
 			for (int j = 0; j < synsets.size(); j++) {
 				// Skip the current synset
 				if (j == i) {
@@ -112,19 +112,24 @@ public class Lesk {
 				}
 
 				for (final Synset synset : synsets.get(j)) {
-					strings.addAll(signatures.get(synset));
+					for (final int id : signatures.get(synset)) {
+						strings.set(id);
+					}
 				}
 			}
 
 			// Get overlap counts for words in each synset with the rest of the words
 			final Map<Synset, Integer> counts = new HashMap<>();
 			for (final Synset synset : synset_list) {
-				// Set intersection
-				final Set<String> overlap = new HashSet<>();
-				overlap.addAll(signatures.get(synset));
-				overlap.retainAll(strings);
+				// Set intersection, as the ids in a signature are distinct
+				int overlap = 0;
+				for (final int id : signatures.get(synset)) {
+					if (strings.get(id)) {
+						overlap++;
+					}
+				}
 
-				counts.put(synset, overlap.size());
+				counts.put(synset, overlap);
 			}
 
 			// Get the Synset with maximum overlap
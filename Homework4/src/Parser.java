@@ -4,6 +4,8 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -11,7 +13,6 @@ import java.util.Map;
 import java.util.Set;
 
 import edu.smu.tspell.wordnet.Synset;
-import edu.smu.tspell.wordnet.WordNetDatabase;
 import edu.smu.tspell.wordnet.WordNetException;
 
 /**
@@ -20,13 +21,15 @@ import edu.smu.tspell.wordnet.WordNetException;
  * @author Ekal.Golas
  */
 public class Parser {
-	private final List<Synset[]>			synsets;
-	private final List<Synset>				defaults;
-	private final Map<Synset, Set<String>>	signatures;
-	private final Set<String>				stopwords;
+	private final List<Synset[]>		synsets;
+	private final List<Synset>			defaults;
+	private final Map<Synset, int[]>	signatures;
+	private final Set<String>			stopwords;
+	private final SynsetCache			cache;
+	private final BitSet				stopwordIds;
 
 	/**
-	 * Constructor
+	 * Constructor that looks up synsets and signatures through the cache shared by the process
 	 *
 	 * @param file
 	 *            Stop words file
@@ -34,10 +37,29 @@ public class Parser {
 	 * @throws FileNotFoundException
 	 */
 	public Parser(final File file) throws FileNotFoundException, IOException {
+		this(file, SynsetCache.getInstance());
+	}
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param file
+	 *            Stop words file
+	 * @param cache
+	 *            Cache to look up synsets and signatures through
+	 * @throws IOException
+	 * @throws FileNotFoundException
+	 */
+	public Parser(final File file, final SynsetCache cache) throws FileNotFoundException, IOException {
 		this.synsets = new ArrayList<>();
 		this.defaults = new ArrayList<>();
 		this.signatures = new HashMap<>();
 		this.stopwords = this.getStopWords(file);
+		this.cache = cache;
+		this.stopwordIds = new BitSet();
+		for (final String stopword : this.stopwords) {
+			this.stopwordIds.set(cache.intern(stopword));
+		}
 	}
 
 	/**
@@ -55,9 +77,9 @@ public class Parser {
 	}
 
 	/**
-	 * @return the signatures
+	 * @return the sorted ids of the words in the signature of each synset, in the vocabulary of the cache
 	 */
-	public final Map<Synset, Set<String>> getSignatures() {
+	public final Map<Synset, int[]> getSignatures() {
 		return this.signatures;
 	}
 
@@ -71,17 +93,16 @@ public class Parser {
 	public void updateSynsets(final String[] words) throws WordNetException {
 		for (String stem : words) {
 			// Ignore stopwords
-			stem = this.transformText(stem);
+			stem = Tokenizer.normalize(stem);
 			if (this.stopwords.contains(stem)) {
 				this.synsets.add(new Synset[0]);
 				this.defaults.add(null);
 				continue;
 			}
 
-			// Get synsets from wordnet and add to synsets list. Since we chose the first in order in case of tie, default is the first synset
-			final WordNetDatabase database = WordNetDatabase.getFileInstance();
-			final Synset[] syn = database.getSynsets(stem);
-			if (syn == null || syn.length == 0) {
+			// Get synsets from the cache and add to synsets list. Since we chose the first in order in case of tie, default is the first synset
+			final Synset[] syn = this.cache.getSynsets(stem);
+			if (syn.length == 0) {
 				// Skip if no sense can be made for this word
 				this.synsets.add(new Synset[0]);
 				this.defaults.add(null);
@@ -93,19 +114,9 @@ public class Parser {
 
 			// Add all words in definition and usages in signatures except stopwords
 			for (final Synset synset : syn) {
-				final Set<String> strings = new HashSet<>();
-				for (final String string : synset.getDefinition().split(" ")) {
-					strings.add(this.transformText(string));
+				if (!this.signatures.containsKey(synset)) {
+					this.signatures.put(synset, Arrays.stream(this.cache.getSignature(synset)).filter(id -> !this.stopwordIds.get(id)).toArray());
 				}
-
-				for (final String example : synset.getUsageExamples()) {
-					for (final String string : example.split(" ")) {
-						strings.add(this.transformText(string));
-					}
-				}
-
-				strings.removeAll(this.stopwords);
-				this.signatures.put(synset, strings);
 			}
 		}
 	}
@@ -128,20 +139,4 @@ public class Parser {
 
 		return stopwords;
 	}
-
-	/**
-	 * Removes punctuation
-	 *
-	 * @param text
-	 *            Text to transform
-	 * @return Transformed text
-	 */
-	private String transformText(String text) {
-		// Remove the special characters
-		text = text.replaceAll("[\"\\.]", "");
-
-		// Trim and set text to lower case
-		text = text.trim().toLowerCase();
-		return text;
-	}
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.WordNetDatabase;
+import edu.smu.tspell.wordnet.WordNetException;
+
+/**
+ * Process wide cache of the synsets of each lemma and the signature of each synset, so that a word repeated across sentences does not read
+ * the WordNet files or split the glosses of its synsets again. Signatures are kept as the sorted ids of their distinct words, interned in
+ * one vocabulary. Both caches hold a bounded number of entries and evict the least recently used one when full
+ *
+ * @author Ekal.Golas
+ */
+public class SynsetCache {
+	private static final int				LEMMAS		= 10000;
+	private static final int				SIGNATURES	= 50000;
+	private static SynsetCache				instance;
+	private final Map<String, Synset[]>		synsets;
+	private final Map<Synset, int[]>		signatures;
+	private final Map<String, Integer>		ids;
+	private final List<String>				words;
+	private long							synsetHits;
+	private long							synsetMisses;
+	private long							signatureHits;
+	private long							signatureMisses;
+
+	/**
+	 * Parameterized constructor
+	 *
+	 * @param lemmas
+	 *            Highest number of lemmas to keep the synsets of
+	 * @param signatures
+	 *            Highest number of synsets to keep the signatures of
+	 */
+	public SynsetCache(final int lemmas, final int signatures) {
+		this.synsets = lru(lemmas);
+		this.signatures = lru(signatures);
+		this.ids = new HashMap<>();
+		this.words = new ArrayList<>();
+	}
+
+	/**
+	 * @return the cache shared by the process, created with the default bounds on first use
+	 */
+	public static synchronized SynsetCache getInstance() {
+		if (instance == null) {
+			instance = new SynsetCache(LEMMAS, SIGNATURES);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Get the synsets of a lemma, reading them from WordNet only if they are not cached
+	 *
+	 * @param lemma
+	 *            Normalized word
+	 * @return Synsets of the lemma, empty if WordNet has none
+	 * @throws WordNetException
+	 */
+	public synchronized Synset[] getSynsets(final String lemma) throws WordNetException {
+		Synset[] syn = this.synsets.get(lemma);
+		if (syn != null) {
+			this.synsetHits++;
+			return syn;
+		}
+
+		this.synsetMisses++;
+		syn = WordNetDatabase.getFileInstance().getSynsets(lemma);
+		if (syn == null) {
+			syn = new Synset[0];
+		}
+
+		this.synsets.put(lemma, syn);
+		return syn;
+	}
+
+	/**
+	 * Get the signature of a synset, splitting its definition and usage examples only if it is not cached
+	 *
+	 * @param synset
+	 *            Synset
+	 * @return Sorted ids of the distinct words of the definition and usage examples
+	 */
+	public synchronized int[] getSignature(final Synset synset) {
+		int[] signature = this.signatures.get(synset);
+		if (signature != null) {
+			this.signatureHits++;
+			return signature;
+		}
+
+		// Split the glosses and keep the distinct ids of their words
+		this.signatureMisses++;
+		final List<String> strings = new ArrayList<>();
+		Tokenizer.tokenize(synset.getDefinition(), strings);
+		for (final String example : synset.getUsageExamples()) {
+			Tokenizer.tokenize(example, strings);
+		}
+
+		signature = strings.stream().mapToInt(this::intern).sorted().distinct().toArray();
+		this.signatures.put(synset, signature);
+		return signature;
+	}
+
+	/**
+	 * Get the id of a word, giving it the next id if it has none
+	 *
+	 * @param word
+	 *            Normalized word
+	 * @return Id of the word
+	 */
+	public synchronized int intern(final String word) {
+		Integer id = this.ids.get(word);
+		if (id == null) {
+			id = this.words.size();
+			this.ids.put(word, id);
+			this.words.add(word);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Get the word of an id
+	 *
+	 * @param id
+	 *            Id of the word
+	 * @return Word
+	 */
+	public synchronized String getWord(final int id) {
+		return this.words.get(id);
+	}
+
+	/**
+	 * Print the hits and misses of both caches and their sizes
+	 *
+	 * @param out
+	 *            Stream to print to
+	 */
+	public synchronized void printStatistics(final PrintStream out) {
+		out.println("Synset cache: " + this.synsetHits + " hits, " + this.synsetMisses + " misses, " + this.synsets.size() + " lemmas");
+		out.println("Signature cache: " + this.signatureHits + " hits, " + this.signatureMisses + " misses, " + this.signatures.size() + " synsets");
+		out.println("Words interned: " + this.words.size());
+	}
+
+	/**
+	 * Create a map that keeps its entries in order of access and drops the least recently used one once it holds more than a bound
+	 *
+	 * @param capacity
+	 *            Highest number of entries
+	 * @return Map
+	 */
+	private static <K, V> Map<K, V> lru(final int capacity) {
+		return new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Entry<K, V> eldest) {
+				return this.size() > capacity;
+			}
+		};
+	}
+}
\ No newline at end of file
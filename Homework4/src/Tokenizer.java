@@ -0,0 +1,96 @@
+import java.util.Collection;
+
+/**
+ * Class to split text into words and normalize them in one pass over its characters, without making a string for each step. Words are
+ * separated by spaces, double quotes and periods are removed, white space is trimmed and letters are converted to lower case
+ *
+ * @author Ekal.Golas
+ */
+public final class Tokenizer {
+	/**
+	 * Private constructor, as this class only has static methods
+	 */
+	private Tokenizer() {
+	}
+
+	/**
+	 * Normalize a word
+	 *
+	 * @param word
+	 *            Word to normalize
+	 * @return Word with double quotes and periods removed, trimmed and in lower case
+	 */
+	public static String normalize(final String word) {
+		return normalize(word, 0, word.length());
+	}
+
+	/**
+	 * Split text into words separated by spaces and add each of them normalized. Empty words are kept as empty strings, except at the end of
+	 * the text, the same as splitting the text on spaces
+	 *
+	 * @param text
+	 *            Text to split
+	 * @param words
+	 *            Collection to add the normalized words to
+	 */
+	public static void tokenize(final String text, final Collection<String> words) {
+		if (text.isEmpty()) {
+			words.add(text);
+			return;
+		}
+
+		// Hold empty words back until a word follows them
+		int start = 0;
+		int empty = 0;
+		for (int i = 0; i <= text.length(); i++) {
+			if (i < text.length() && text.charAt(i) != ' ') {
+				continue;
+			}
+
+			if (i == start) {
+				empty++;
+			} else {
+				for (; empty > 0; empty--) {
+					words.add("");
+				}
+				words.add(normalize(text, start, i));
+			}
+
+			start = i + 1;
+		}
+	}
+
+	/**
+	 * Normalize a word held in a span of text
+	 *
+	 * @param text
+	 *            Text holding the word
+	 * @param start
+	 *            Index of the first character of the word
+	 * @param end
+	 *            Index after the last character of the word
+	 * @return Word with double quotes and periods removed, trimmed and in lower case
+	 */
+	private static String normalize(final String text, final int start, final int end) {
+		// Remove the special characters and convert to lower case
+		final char[] chars = new char[end - start];
+		int size = 0;
+		for (int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+			if (c != '"' && c != '.') {
+				chars[size++] = Character.toLowerCase(c);
+			}
+		}
+
+		// Trim white space from both ends
+		int first = 0;
+		while (first < size && chars[first] <= ' ') {
+			first++;
+		}
+		while (size > first && chars[size - 1] <= ' ') {
+			size--;
+		}
+
+		return new String(chars, first, size - first);
+	}
+}
\ No newline at end of file